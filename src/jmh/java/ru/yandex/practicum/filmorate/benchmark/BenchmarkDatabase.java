@@ -0,0 +1,204 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.TransactionManager;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+import ru.yandex.practicum.filmorate.dao.*;
+import ru.yandex.practicum.filmorate.model.dictionary.Genre;
+import ru.yandex.practicum.filmorate.model.dictionary.Mpa;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.film.CachingFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.CachingUserStorage;
+
+import javax.sql.DataSource;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.*;
+
+// Embedded H2 with the application schema, seeded with synthetic data
+public class BenchmarkDatabase {
+    private static final int BATCH_SIZE = 10_000;
+    private static final int GENRES = 6;
+    private static final int MPA = 5;
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final Random random = new Random(42);
+
+    public BenchmarkDatabase() {
+        this(true);
+    }
+
+    // Schema without secondary indexes shows what they are worth
+    public BenchmarkDatabase(boolean withIndexes) {
+        this(new DriverManagerDataSource(
+                "jdbc:h2:mem:benchmark-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", ""), withIndexes);
+    }
+
+    public BenchmarkDatabase(DataSource dataSource) {
+        this(dataSource, true);
+    }
+
+    public BenchmarkDatabase(DataSource dataSource, boolean withIndexes) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator(
+                new ClassPathResource("db/changelog/baseline.sql"),
+                new ClassPathResource("db/changelog/data.sql"));
+        if (withIndexes) {
+            populator.addScript(new ClassPathResource("db/changelog/indexes.sql"));
+        }
+        populator.execute(dataSource);
+    }
+
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    public JdbcTemplate getJdbcTemplate() {
+        return jdbcTemplate;
+    }
+
+    public FilmDbStorage filmDbStorage() {
+        CachedDictionary<Mpa> mpaDictionary =
+                new CachedDictionary<>(new MpaDbStorage(jdbcTemplate), Mpa::getId, "Mpa");
+        mpaDictionary.afterPropertiesSet();
+
+        FilmDbStorage filmDbStorage = new FilmDbStorage(jdbcTemplate,
+                new StaticListableBeanFactory().getBeanProvider(LikeWriteBuffer.class),
+                mpaDictionary,
+                genreDictionary());
+        filmDbStorage.loadPopularityIndex();
+
+        return filmDbStorage;
+    }
+
+    public UserDbStorage userDbStorage() {
+        UserDbStorage userDbStorage = new UserDbStorage(jdbcTemplate);
+        userDbStorage.loadFriendIndex();
+
+        return userDbStorage;
+    }
+
+    // Service over caching and transactional storages, wired as in the application
+    public FilmService filmService() {
+        FilmService filmService = new FilmService(
+                new CachingFilmStorage(transactional(filmDbStorage()), Caffeine.newBuilder().build()),
+                new CachingUserStorage(transactional(userDbStorage()), Caffeine.newBuilder().build()),
+                genreDictionary(),
+                new SimpleMeterRegistry(),
+                10_000);
+        filmService.loadSearchIndex();
+
+        return filmService;
+    }
+
+    // Users and films get ids 1..users and 1..films in a fresh database
+    public void seed(int users, int films, int likesPerFilm, int friendsPerUser) {
+        List<Object[]> rows = new ArrayList<>();
+
+        for (int i = 1; i <= users; i++) {
+            rows.add(new Object[]{"user" + i + "@mail.ru", "user" + i, "User " + i,
+                    Date.valueOf(LocalDate.of(1950, 1, 1).plusDays(i % 20_000))});
+            rows = flush("INSERT INTO users (email, login, user_name, birthday) VALUES (?, ?, ?, ?);", rows, false);
+        }
+        flush("INSERT INTO users (email, login, user_name, birthday) VALUES (?, ?, ?, ?);", rows, true);
+
+        rows = new ArrayList<>();
+        List<Object[]> genreRows = new ArrayList<>();
+        List<Object[]> likeRows = new ArrayList<>();
+        for (int i = 1; i <= films; i++) {
+            Set<Integer> likes = pickDistinct(Math.min(likesPerFilm, users), users, 0);
+
+            rows.add(new Object[]{"Film " + i + " title", "Description of film " + i,
+                    Date.valueOf(LocalDate.of(1900, 1, 1).plusDays(i % 40_000)), 90 + i % 60,
+                    likes.size(), 1 + i % MPA});
+            genreRows.add(new Object[]{i, 1 + i % GENRES});
+            if (i % 2 == 0) {
+                genreRows.add(new Object[]{i, 1 + (i + 3) % GENRES});
+            }
+            for (Integer userId : likes) {
+                likeRows.add(new Object[]{userId, i});
+            }
+
+            rows = flush("INSERT INTO films (film_name, description, release_date, duration, rate, mpa_id) " +
+                    "VALUES (?, ?, ?, ?, ?, ?);", rows, false);
+            genreRows = flush("INSERT INTO film_genre (film_id, genre_id) VALUES (?, ?);", genreRows, false);
+            likeRows = flush("INSERT INTO likes (user_id, film_id) VALUES (?, ?);", likeRows, false);
+        }
+        flush("INSERT INTO films (film_name, description, release_date, duration, rate, mpa_id) " +
+                "VALUES (?, ?, ?, ?, ?, ?);", rows, true);
+        flush("INSERT INTO film_genre (film_id, genre_id) VALUES (?, ?);", genreRows, true);
+        flush("INSERT INTO likes (user_id, film_id) VALUES (?, ?);", likeRows, true);
+
+        rows = new ArrayList<>();
+        for (int i = 1; i <= users; i++) {
+            for (Integer friendId : pickDistinct(Math.min(friendsPerUser, users - 1), users, i)) {
+                rows.add(new Object[]{i, friendId, "REQUESTED"});
+            }
+            rows = flush("INSERT INTO friendship (user_id, friend_id, friend_status) VALUES (?, ?, ?);",
+                    rows, false);
+        }
+        flush("INSERT INTO friendship (user_id, friend_id, friend_status) VALUES (?, ?, ?);", rows, true);
+    }
+
+    // Proxy applying @Transactional of the storage as Spring does, with synchronizations for afterCommit
+    @SuppressWarnings("unchecked")
+    public <T> T transactional(T storage) {
+        ProxyFactory proxyFactory = new ProxyFactory(storage);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice(new TransactionInterceptor(
+                (TransactionManager) new DataSourceTransactionManager(dataSource),
+                new AnnotationTransactionAttributeSource()));
+
+        return (T) proxyFactory.getProxy();
+    }
+
+    public String explain(String sql, Object... args) {
+        return String.join("\n", jdbcTemplate.queryForList("EXPLAIN " + sql, String.class, args));
+    }
+
+    public int randomId(int bound) {
+        return 1 + random.nextInt(bound);
+    }
+
+    private CachedDictionary<Genre> genreDictionary() {
+        CachedDictionary<Genre> genreDictionary =
+                new CachedDictionary<>(new GenreDbStorage(jdbcTemplate), Genre::getId, "Genre");
+        genreDictionary.afterPropertiesSet();
+
+        return genreDictionary;
+    }
+
+    private Set<Integer> pickDistinct(int count, int bound, int excluded) {
+        Set<Integer> ids = new HashSet<>();
+
+        while (ids.size() < count) {
+            int id = randomId(bound);
+            if (id != excluded) {
+                ids.add(id);
+            }
+        }
+
+        return ids;
+    }
+
+    private List<Object[]> flush(String sql, List<Object[]> rows, boolean force) {
+        if (rows.isEmpty() || (!force && rows.size() < BATCH_SIZE)) {
+            return rows;
+        }
+
+        jdbcTemplate.batchUpdate(sql, rows);
+        return new ArrayList<>();
+    }
+}
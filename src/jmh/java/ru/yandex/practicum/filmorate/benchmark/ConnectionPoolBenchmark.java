@@ -0,0 +1,105 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Throughput of likes and popular films by pool size, with more request threads than connections.
+// Connection wait is published by hikaricp.connections.acquire in the application metrics
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(32)
+@Fork(1)
+public class ConnectionPoolBenchmark {
+    private static final int THREADS = 32;
+
+    @Param({"1", "2", "4", "8", "16", "32"})
+    private int poolSize;
+
+    @Param({"10000"})
+    private int films;
+
+    @Param({"10000"})
+    private int users;
+
+    @Param({"10"})
+    private int likesPerFilm;
+
+    private Path directory;
+    private HikariDataSource dataSource;
+    private FilmService filmService;
+    private long[] likingUserIds;
+    private final AtomicInteger nextUser = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        // File database as in production, so commits are flushed to disk
+        directory = Files.createTempDirectory("filmorate-pool");
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:file:" + directory.resolve("benchmark"));
+        dataSource.setUsername("sa");
+        dataSource.setMaximumPoolSize(poolSize);
+        dataSource.setMinimumIdle(poolSize);
+        dataSource.setConnectionTimeout(30_000);
+
+        BenchmarkDatabase database = new BenchmarkDatabase(dataSource);
+        database.seed(users, films, likesPerFilm, 0);
+        // Same path as the endpoints: existence checks, caches and one transaction per like
+        filmService = database.filmService();
+
+        // Every thread likes as its own user, so likes never collide
+        likingUserIds = new long[THREADS];
+        for (int i = 0; i < THREADS; i++) {
+            likingUserIds[i] = database.userDbStorage().create(new User()
+                    .setEmail("pool" + i + "@mail.ru")
+                    .setLogin("pool" + i)
+                    .setName("Pool " + i)
+                    .setBirthday(LocalDate.of(1990, 1, 1))).getId();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        dataSource.close();
+        try (var paths = Files.walk(directory)) {
+            paths.sorted((first, second) -> second.compareTo(first)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class LikingUser {
+        private long userId;
+
+        @Setup(Level.Trial)
+        public void setUp(ConnectionPoolBenchmark benchmark) {
+            userId = benchmark.likingUserIds[benchmark.nextUser.getAndIncrement() % THREADS];
+        }
+    }
+
+    @Benchmark
+    public void likeAndUnlike(LikingUser user) {
+        long filmId = 1L + ThreadLocalRandom.current().nextInt(films);
+
+        filmService.addLike(filmId, user.userId);
+        filmService.deleteLike(filmId, user.userId);
+    }
+
+    @Benchmark
+    public List<Film> showMostPopularFilms() {
+        return filmService.showMostPopularFilms(10);
+    }
+}
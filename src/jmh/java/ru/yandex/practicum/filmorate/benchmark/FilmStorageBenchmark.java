@@ -0,0 +1,84 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.dao.FilmDbStorage;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilmStorageBenchmark {
+
+    @Param({"10000"})
+    private int films;
+
+    @Param({"10000"})
+    private int users;
+
+    @Param({"10"})
+    private int likesPerFilm;
+
+    private BenchmarkDatabase database;
+    private FilmDbStorage filmStorage;
+    private FilmSearchIndex searchIndex;
+    private Long likingUserId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase();
+        database.seed(users, films, likesPerFilm, 0);
+        // Likes run in one transaction each, as through the Spring proxy
+        filmStorage = database.transactional(database.filmDbStorage());
+        searchIndex = new FilmSearchIndex();
+        filmStorage.exportAll(searchIndex::put);
+        likingUserId = database.userDbStorage().create(new User()
+                .setEmail("benchmark@mail.ru")
+                .setLogin("benchmark")
+                .setName("Benchmark")
+                .setBirthday(LocalDate.of(1990, 1, 1))).getId();
+    }
+
+    @Benchmark
+    public List<Film> findAll() {
+        return filmStorage.findAll();
+    }
+
+    @Benchmark
+    public List<Film> findPage() {
+        return filmStorage.findAll((long) database.randomId(films), 100);
+    }
+
+    @Benchmark
+    public List<Film> showMostPopularFilms() {
+        return filmStorage.showMostPopularFilms(10);
+    }
+
+    @Benchmark
+    public List<Long> searchIndexByTitle() {
+        return searchIndex.search(database.randomId(films) + " title", Set.of(FilmSearchIndex.Field.TITLE), 100);
+    }
+
+    @Benchmark
+    public Film getById() {
+        return filmStorage.getById((long) database.randomId(films));
+    }
+
+    // Like and unlike keep the dataset unchanged between invocations
+    @Benchmark
+    public void addAndDeleteLike() {
+        Film film = new Film().setId((long) database.randomId(films));
+
+        filmStorage.addLike(film, likingUserId);
+        filmStorage.deleteLike(film, likingUserId);
+    }
+}
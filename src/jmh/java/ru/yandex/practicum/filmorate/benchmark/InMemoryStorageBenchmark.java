@@ -0,0 +1,109 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.dictionary.Mpa;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InMemoryStorageBenchmark {
+
+    @Param({"10000"})
+    private int films;
+
+    @Param({"10000"})
+    private int users;
+
+    @Param({"10"})
+    private int likesPerFilm;
+
+    @Param({"50"})
+    private int friendsPerUser;
+
+    private final Random random = new Random(42);
+    private InMemoryFilmStorage filmStorage;
+    private InMemoryUserStorage userStorage;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        filmStorage = new InMemoryFilmStorage();
+        userStorage = new InMemoryUserStorage();
+
+        for (int i = 1; i <= users; i++) {
+            userStorage.create(new User()
+                    .setEmail("user" + i + "@mail.ru")
+                    .setLogin("user" + i)
+                    .setName("User " + i)
+                    .setBirthday(LocalDate.of(1950, 1, 1).plusDays(i % 20_000)));
+        }
+
+        for (int i = 1; i <= films; i++) {
+            Film film = filmStorage.create(new Film()
+                    .setName("Film " + i + " title")
+                    .setDescription("Description of film " + i)
+                    .setReleaseDate(LocalDate.of(1900, 1, 1).plusDays(i % 40_000))
+                    .setDuration(90 + i % 60)
+                    .setRate(0)
+                    .setMpa(new Mpa().setId(1 + i % 5)));
+
+            for (int j = 0; j < likesPerFilm; j++) {
+                filmStorage.addLike(film, (long) randomId(users));
+            }
+        }
+
+        for (int i = 1; i <= users; i++) {
+            User user = userStorage.getById((long) i);
+            for (int j = 0; j < friendsPerUser; j++) {
+                userStorage.addFriend(user, userStorage.getById((long) randomId(users)));
+            }
+        }
+    }
+
+    @Benchmark
+    public List<Film> findAllFilms() {
+        return filmStorage.findAll();
+    }
+
+    @Benchmark
+    public List<Film> showMostPopularFilms() {
+        return filmStorage.showMostPopularFilms(10);
+    }
+
+    @Benchmark
+    public void addAndDeleteLike() {
+        Film film = filmStorage.getById((long) randomId(films));
+        long userId = users + 1;
+
+        filmStorage.addLike(film, userId);
+        filmStorage.deleteLike(film, userId);
+    }
+
+    @Benchmark
+    public List<User> findAllUsers() {
+        return userStorage.findAll();
+    }
+
+    @Benchmark
+    public List<User> showCommonFriends() {
+        return userStorage.showCommonFriends(
+                userStorage.getById((long) randomId(users)),
+                userStorage.getById((long) randomId(users)),
+                true);
+    }
+
+    private int randomId(int bound) {
+        return 1 + random.nextInt(bound);
+    }
+}
@@ -0,0 +1,76 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// The same lookups on the schema with and without indexes.sql, plans are printed on setup
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndexBenchmark {
+    private static final String FILM_LIKES =
+            "SELECT film_id, user_id " +
+            "FROM likes " +
+            "WHERE film_id = ?;";
+
+    private static final String FOLLOWERS =
+            "SELECT user_id " +
+            "FROM friendship " +
+            "WHERE friend_id = ?;";
+
+    private static final String MOST_POPULAR =
+            "SELECT film_id, rate " +
+            "FROM films " +
+            "ORDER BY rate DESC, film_id DESC " +
+            "LIMIT 10;";
+
+    @Param({"false", "true"})
+    private boolean withIndexes;
+
+    @Param({"100000"})
+    private int films;
+
+    @Param({"20000"})
+    private int users;
+
+    @Param({"20"})
+    private int likesPerFilm;
+
+    @Param({"20"})
+    private int friendsPerUser;
+
+    private BenchmarkDatabase database;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase(withIndexes);
+        database.seed(users, films, likesPerFilm, friendsPerUser);
+        database.getJdbcTemplate().execute("ANALYZE;");
+
+        System.out.printf("%nIndexes: %s%n%s%n%s%n%s%n", withIndexes,
+                database.explain(FILM_LIKES, 1),
+                database.explain(FOLLOWERS, 1),
+                database.explain(MOST_POPULAR));
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> filmLikes() {
+        return database.getJdbcTemplate().queryForList(FILM_LIKES, database.randomId(films));
+    }
+
+    @Benchmark
+    public List<Long> followers() {
+        return database.getJdbcTemplate().queryForList(FOLLOWERS, Long.class, database.randomId(users));
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> mostPopular() {
+        return database.getJdbcTemplate().queryForList(MOST_POPULAR);
+    }
+}
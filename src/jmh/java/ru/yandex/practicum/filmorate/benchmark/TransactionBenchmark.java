@@ -0,0 +1,89 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.dao.FilmDbStorage;
+import ru.yandex.practicum.filmorate.dao.UserDbStorage;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.dictionary.Genre;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Multi-statement writes with one commit per statement and with one commit per operation
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransactionBenchmark {
+
+    @Param({"false", "true"})
+    private boolean transactional;
+
+    @Param({"1000"})
+    private int films;
+
+    @Param({"1000"})
+    private int users;
+
+    private Path directory;
+    private HikariDataSource dataSource;
+    private BenchmarkDatabase database;
+    private FilmDbStorage filmStorage;
+    private UserDbStorage userStorage;
+    private User user;
+    private User friend;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        // Commits of a file database are flushed to its log
+        directory = Files.createTempDirectory("filmorate-transactions");
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:file:" + directory.resolve("benchmark"));
+        dataSource.setUsername("sa");
+        dataSource.setMaximumPoolSize(4);
+
+        database = new BenchmarkDatabase(dataSource);
+        database.seed(users, films, 0, 0);
+        filmStorage = database.filmDbStorage();
+        userStorage = database.userDbStorage();
+        if (transactional) {
+            filmStorage = database.transactional(filmStorage);
+            userStorage = database.transactional(userStorage);
+        }
+
+        user = userStorage.getById(1L);
+        friend = userStorage.getById(2L);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        dataSource.close();
+        try (var paths = Files.walk(directory)) {
+            paths.sorted((first, second) -> second.compareTo(first)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public Film updateFilm() {
+        Film film = filmStorage.getById((long) database.randomId(films));
+        film.setDescription("Updated " + System.nanoTime());
+        film.setGenres(Set.of(new Genre().setId(1), new Genre().setId(2)));
+
+        return filmStorage.update(film);
+    }
+
+    @Benchmark
+    public void befriendAndUnfriend() {
+        userStorage.addFriend(user, friend);
+        userStorage.addFriend(friend, user);
+        userStorage.deleteFriend(user, friend);
+        userStorage.deleteFriend(friend, user);
+    }
+}
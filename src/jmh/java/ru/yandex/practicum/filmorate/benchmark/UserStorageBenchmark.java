@@ -0,0 +1,61 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.dao.UserDbStorage;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserStorageBenchmark {
+
+    @Param({"10000"})
+    private int users;
+
+    @Param({"50"})
+    private int friendsPerUser;
+
+    private BenchmarkDatabase database;
+    private UserDbStorage userStorage;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase();
+        database.seed(users, 0, 0, friendsPerUser);
+        userStorage = database.userDbStorage();
+    }
+
+    @Benchmark
+    public List<User> findAll() {
+        return userStorage.findAll();
+    }
+
+    @Benchmark
+    public List<User> findAllWithoutFriends() {
+        return userStorage.findAll(false);
+    }
+
+    @Benchmark
+    public List<User> findPage() {
+        return userStorage.findAll((long) database.randomId(users), 100, true);
+    }
+
+    @Benchmark
+    public List<User> showCommonFriends() {
+        User user = new User().setId((long) database.randomId(users));
+        User friend = new User().setId((long) database.randomId(users));
+
+        return userStorage.showCommonFriends(user, friend, true);
+    }
+
+    @Benchmark
+    public List<User> showFriends() {
+        return userStorage.showFriends(new User().setId((long) database.randomId(users)), true);
+    }
+}
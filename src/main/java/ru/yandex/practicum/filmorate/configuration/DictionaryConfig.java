@@ -0,0 +1,23 @@
+package ru.yandex.practicum.filmorate.configuration;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.yandex.practicum.filmorate.dao.CachedDictionary;
+import ru.yandex.practicum.filmorate.dao.GenreDbStorage;
+import ru.yandex.practicum.filmorate.dao.MpaDbStorage;
+import ru.yandex.practicum.filmorate.model.dictionary.Genre;
+import ru.yandex.practicum.filmorate.model.dictionary.Mpa;
+
+@Configuration
+public class DictionaryConfig {
+
+    @Bean
+    public CachedDictionary<Genre> cachedGenreDictionary(GenreDbStorage genreDbStorage) {
+        return new CachedDictionary<>(genreDbStorage, Genre::getId, "Genre");
+    }
+
+    @Bean
+    public CachedDictionary<Mpa> cachedMpaDictionary(MpaDbStorage mpaDbStorage) {
+        return new CachedDictionary<>(mpaDbStorage, Mpa::getId, "Mpa");
+    }
+}
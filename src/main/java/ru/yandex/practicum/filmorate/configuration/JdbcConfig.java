@@ -0,0 +1,21 @@
+package ru.yandex.practicum.filmorate.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.yandex.practicum.filmorate.dao.InstrumentedJdbcTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+@Configuration
+public class JdbcConfig {
+
+    // Replaces the auto-configured JdbcTemplate, so every storage is instrumented
+    @Bean
+    public InstrumentedJdbcTemplate jdbcTemplate(DataSource dataSource,
+                                                 @Value("${filmorate.jdbc.slow-query-threshold:PT0.2S}")
+                                                 Duration slowQueryThreshold) {
+        return new InstrumentedJdbcTemplate(dataSource, slowQueryThreshold);
+    }
+}
@@ -0,0 +1,62 @@
+package ru.yandex.practicum.filmorate.configuration;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.yandex.practicum.filmorate.dao.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.CachingFilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.CachingUserStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.time.Duration;
+
+@Configuration
+public class StorageCacheConfig {
+
+    @Bean
+    public CachingFilmStorage cachingFilmStorage(@Qualifier("filmDbStorage") FilmStorage filmStorage,
+                                                 ObjectProvider<LikeWriteBuffer> likeWriteBuffer,
+                                                 MeterRegistry meterRegistry,
+                                                 @Value("${filmorate.cache.films.max-size:10000}") long maxSize,
+                                                 @Value("${filmorate.cache.films.expire-after-write:PT10M}")
+                                                 Duration expireAfterWrite) {
+        Cache<Long, Film> films = buildCache(maxSize, expireAfterWrite);
+        CaffeineCacheMetrics.monitor(meterRegistry, films, "films");
+
+        CachingFilmStorage cachingFilmStorage = new CachingFilmStorage(filmStorage, films);
+        // Buffered likes reach the database only on flush
+        likeWriteBuffer.ifAvailable(buffer -> buffer.addFlushListener(rateDeltas ->
+                cachingFilmStorage.invalidate(rateDeltas.keySet())));
+
+        return cachingFilmStorage;
+    }
+
+    @Bean
+    public CachingUserStorage cachingUserStorage(@Qualifier("userDbStorage") UserStorage userStorage,
+                                                 MeterRegistry meterRegistry,
+                                                 @Value("${filmorate.cache.users.max-size:10000}") long maxSize,
+                                                 @Value("${filmorate.cache.users.expire-after-write:PT10M}")
+                                                 Duration expireAfterWrite) {
+        Cache<Long, User> users = buildCache(maxSize, expireAfterWrite);
+        CaffeineCacheMetrics.monitor(meterRegistry, users, "users");
+
+        return new CachingUserStorage(userStorage, users);
+    }
+
+    private <V> Cache<Long, V> buildCache(long maxSize, Duration expireAfterWrite) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+}
@@ -1,16 +1,22 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.service.FilmService;
 
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 @RequestMapping("/films")
@@ -18,17 +24,55 @@ import java.util.List;
 @Tag(name = "Операции с фильмами")
 public class FilmController {
     private static final String FILMS_COUNT = "10";
+    private static final String SEARCH_LIMIT = "100";
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
     private final FilmService filmService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public FilmController(FilmService filmService) {
+    public FilmController(FilmService filmService, ObjectMapper objectMapper) {
         this.filmService = filmService;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping()
-    @Operation(summary = "Получение всех фильмов")
-    public List<Film> findAll() {
-        return filmService.findAll();
+    @Operation(summary = "Получение всех фильмов или страницы фильмов, если задан size")
+    public ResponseEntity<List<Film>> findAll(
+            @RequestParam(required = false)
+            @Parameter(description = "Идентификатор последнего фильма предыдущей страницы") Long cursor,
+            @RequestParam(required = false) @Parameter(description = "Размер страницы") Integer size) {
+        if (size == null) {
+            return ResponseEntity.ok(filmService.findAll());
+        }
+
+        List<Film> films = filmService.findAll(cursor, size);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+
+        // Full page means that the next one may exist
+        if (films.size() == size) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(films.get(films.size() - 1).getId()));
+        }
+
+        return response.body(films);
+    }
+
+    @GetMapping("/export")
+    @Operation(summary = "Потоковая выгрузка всех фильмов в формате NDJSON")
+    public ResponseEntity<StreamingResponseBody> exportAll() {
+        // Each film is written as soon as it is read from storage
+        StreamingResponseBody body = outputStream -> filmService.exportAll(film -> {
+            try {
+                outputStream.write(objectMapper.writeValueAsBytes(film));
+                outputStream.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        return ResponseEntity.ok()
+                .contentType(NDJSON)
+                .body(body);
     }
 
     @PostMapping()
@@ -76,9 +120,13 @@ public class FilmController {
     }
 
     @GetMapping("/search")
-    @Operation(summary = "Поиск фильмов по названию и/или режиссеру")
+    @Operation(summary = "Поиск фильмов по названию, описанию и/или жанру")
     public List<Film> searchFilms(@RequestParam String query,
-                                  @RequestParam(defaultValue = "title") String by) {
-        return filmService.searchFilms(query, by);
+                                  @RequestParam(defaultValue = "title")
+                                  @Parameter(description = "Поля поиска через запятую: title, description, genre")
+                                  String by,
+                                  @RequestParam(defaultValue = SEARCH_LIMIT)
+                                  @Parameter(description = "Максимальное количество фильмов") Integer limit) {
+        return filmService.searchFilms(query, by, limit);
     }
 }
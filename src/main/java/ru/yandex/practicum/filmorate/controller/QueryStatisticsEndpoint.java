@@ -0,0 +1,36 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dao.InstrumentedJdbcTemplate;
+
+import java.util.List;
+import java.util.Optional;
+
+// GET /actuator/queries?count=10 - the slowest statements by total time, DELETE - reset
+@Component
+@Endpoint(id = "queries")
+public class QueryStatisticsEndpoint {
+    private static final int DEFAULT_COUNT = 10;
+
+    private final InstrumentedJdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public QueryStatisticsEndpoint(InstrumentedJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @ReadOperation
+    public List<InstrumentedJdbcTemplate.QueryStatistics> slowestStatements(@Nullable Integer count) {
+        return jdbcTemplate.slowestStatements(Optional.ofNullable(count).orElse(DEFAULT_COUNT));
+    }
+
+    @DeleteOperation
+    public void reset() {
+        jdbcTemplate.resetStatistics();
+    }
+}
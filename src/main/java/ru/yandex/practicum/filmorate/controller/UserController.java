@@ -5,6 +5,7 @@ import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.UserService;
@@ -12,11 +13,15 @@ import ru.yandex.practicum.filmorate.service.UserService;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import java.util.List;
+import java.util.Set;
 
 @RequestMapping("/users")
 @RestController
 @Tag(name = "Операции с пользователями")
 public class UserController {
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    // Friend ids are returned by default, expand=none skips loading them
+    private static final String EXPAND_FRIENDS = "friends";
     private final UserService userService;
 
     @Autowired
@@ -25,9 +30,27 @@ public class UserController {
     }
 
     @GetMapping()
-    @Operation(summary = "Получение всех пользователей")
-    public List<User> findAll() {
-        return userService.findAll();
+    @Operation(summary = "Получение всех пользователей или страницы пользователей, если задан size")
+    public ResponseEntity<List<User>> findAll(
+            @RequestParam(required = false)
+            @Parameter(description = "Идентификатор последнего пользователя предыдущей страницы") Long cursor,
+            @RequestParam(required = false) @Parameter(description = "Размер страницы") Integer size,
+            @RequestParam(defaultValue = EXPAND_FRIENDS)
+            @Parameter(description = "Загружаемые связи: friends или none") Set<String> expand) {
+        boolean withFriends = expand.contains(EXPAND_FRIENDS);
+        if (size == null) {
+            return ResponseEntity.ok(userService.findAll(withFriends));
+        }
+
+        List<User> users = userService.findAll(cursor, size, withFriends);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+
+        // Full page means that the next one may exist
+        if (users.size() == size) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(users.get(users.size() - 1).getId()));
+        }
+
+        return response.body(users);
     }
 
     @PostMapping()
@@ -70,8 +93,11 @@ public class UserController {
     @GetMapping("/{id}/friends")
     @ResponseStatus(code = HttpStatus.OK)
     @Operation(summary = "Получение всех друзей конкретного пользователя")
-    public List<User> showFriends(@PathVariable Long id) {
-        return userService.showFriends(id);
+    public List<User> showFriends(@PathVariable Long id,
+                                  @RequestParam(defaultValue = EXPAND_FRIENDS)
+                                  @Parameter(description = "Загружаемые связи: friends или none")
+                                  Set<String> expand) {
+        return userService.showFriends(id, expand.contains(EXPAND_FRIENDS));
     }
 
     @GetMapping("/{id}/friends/common/{otherId}")
@@ -79,7 +105,10 @@ public class UserController {
     @Operation(summary = "Получение всех общих друзей с конкретным пользователем")
     public List<User> showCommonFriends(@PathVariable @Parameter(description = "Идентификатор пользователя") Long id,
                                         @PathVariable @Parameter(description = "Идентификатор другого пользователя")
-                                        Long otherId) {
-        return userService.showCommonFriends(id, otherId);
+                                        Long otherId,
+                                        @RequestParam(defaultValue = EXPAND_FRIENDS)
+                                        @Parameter(description = "Загружаемые связи: friends или none")
+                                        Set<String> expand) {
+        return userService.showCommonFriends(id, otherId, expand.contains(EXPAND_FRIENDS));
     }
 }
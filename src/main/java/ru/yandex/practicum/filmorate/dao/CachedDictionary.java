@@ -0,0 +1,73 @@
+package ru.yandex.practicum.filmorate.dao;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import ru.yandex.practicum.filmorate.exception.EntityNotFoundException;
+
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+@Slf4j
+public class CachedDictionary<T> implements Dictionary<T>, InitializingBean {
+    private final Dictionary<T> dictionary;
+    private final ToIntFunction<T> idExtractor;
+    private final String entityName;
+
+    // Values are shared by every film row that refers to them, callers must not change them.
+    // Values and their index by id are replaced together on invalidation
+    private volatile Snapshot<T> snapshot;
+
+    public CachedDictionary(Dictionary<T> dictionary, ToIntFunction<T> idExtractor, String entityName) {
+        this.dictionary = dictionary;
+        this.idExtractor = idExtractor;
+        this.entityName = entityName;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        invalidate();
+    }
+
+    @Override
+    public List<T> findAll() {
+        return snapshot.values;
+    }
+
+    @Override
+    public T getById(Integer id) {
+        Object[] valuesById = snapshot.valuesById;
+
+        if (id != null && id >= 0 && id < valuesById.length && valuesById[id] != null) {
+            @SuppressWarnings("unchecked")
+            T value = (T) valuesById[id];
+            return value;
+        }
+
+        throw new EntityNotFoundException(String.format("%s with ID %s does not exist", entityName, id));
+    }
+
+    public void invalidate() {
+        List<T> values = List.copyOf(dictionary.findAll());
+        int maxId = values.stream()
+                .mapToInt(idExtractor)
+                .max()
+                .orElse(-1);
+
+        Object[] valuesById = new Object[maxId + 1];
+        values.forEach(value -> valuesById[idExtractor.applyAsInt(value)] = value);
+
+        snapshot = new Snapshot<>(values, valuesById);
+
+        log.info("{} dictionary loaded: {} values", entityName, values.size());
+    }
+
+    private static class Snapshot<T> {
+        private final List<T> values;
+        private final Object[] valuesById;
+
+        private Snapshot(List<T> values, Object[] valuesById) {
+            this.values = values;
+            this.valuesById = valuesById;
+        }
+    }
+}
@@ -2,43 +2,81 @@ package ru.yandex.practicum.filmorate.dao;
 
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.dao.utils.FilmMapping;
-import ru.yandex.practicum.filmorate.dao.utils.GenreMapping;
 import ru.yandex.practicum.filmorate.exception.DuplicateException;
 import ru.yandex.practicum.filmorate.exception.EntityNotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.dictionary.Genre;
+import ru.yandex.practicum.filmorate.model.dictionary.Mpa;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.PopularityIndex;
 
+import javax.annotation.PostConstruct;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static ru.yandex.practicum.filmorate.dao.utils.FilmMapping.mapFilmToRow;
-import static ru.yandex.practicum.filmorate.dao.utils.GenreMapping.mapRowToGenre;
+import static ru.yandex.practicum.filmorate.dao.utils.FilmMapping.mapRowToFilmWithGenresAndLikes;
+import static ru.yandex.practicum.filmorate.dao.utils.SqlUtils.IN_CHUNK_SIZE;
+import static ru.yandex.practicum.filmorate.dao.utils.SqlUtils.partition;
+import static ru.yandex.practicum.filmorate.dao.utils.SqlUtils.placeholders;
+import static ru.yandex.practicum.filmorate.dao.utils.TransactionUtils.afterCommit;
 
 @Component("filmDbStorage")
 @Slf4j
 @AllArgsConstructor
 public class FilmDbStorage implements FilmStorage {
 
+    private static final int EXPORT_PAGE_SIZE = 1000;
+
     private final JdbcTemplate jdbcTemplate;
+    private final ObjectProvider<LikeWriteBuffer> likeWriteBuffer;
+    // Mpa and genres are resolved to shared instances instead of joining their tables
+    private final CachedDictionary<Mpa> mpaDictionary;
+    private final CachedDictionary<Genre> genreDictionary;
+    private final PopularityIndex popularityIndex = new PopularityIndex();
+    private final List<Consumer<Map<Long, Integer>>> rateListeners = new CopyOnWriteArrayList<>();
+
+    @PostConstruct
+    public void loadPopularityIndex() {
+        String sqlQuery =
+                "SELECT film_id, rate " +
+                "FROM films;";
+
+        // Buffered likes change rate only when they are flushed.
+        // Listener is added before the select, so a flush committed in between is not lost
+        likeWriteBuffer.ifAvailable(buffer -> buffer.addFlushListener(this::rateChanged));
+
+        popularityIndex.clear();
+        jdbcTemplate.query(sqlQuery, rs -> {
+            popularityIndex.put(rs.getLong("film_id"), rs.getObject("rate", Integer.class));
+        });
+
+        log.info("Popularity index loaded: {} films", popularityIndex.size());
+    }
 
     @Override
     public List<Film> findAll() {
         String sqlQuery =
-                "SELECT f.*, m.mpa_name " +
+                "SELECT f.* " +
                 "FROM films f " +
-                "JOIN mpa m ON f.mpa_id = m.mpa_id " +
                 "ORDER BY f.film_id;";
 
-        List<Film> films = jdbcTemplate.query(sqlQuery, FilmMapping::mapRowToFilm);
+        List<Film> films = jdbcTemplate.query(sqlQuery, this::mapRowToFilm);
 
         setFilmsGenres(films);
         setFilmsLikes(films);
@@ -47,6 +85,26 @@ public class FilmDbStorage implements FilmStorage {
     }
 
     @Override
+    public List<Film> findAll(Long cursor, Integer size) {
+        // Films are paged by film_id, cursor is the last id of the previous page
+        String sqlQuery =
+                "SELECT f.* " +
+                "FROM films f " +
+                "WHERE f.film_id > ? " +
+                "ORDER BY f.film_id " +
+                "LIMIT ?;";
+
+        List<Film> films = jdbcTemplate.query(sqlQuery, this::mapRowToFilm,
+                Optional.ofNullable(cursor).orElse(Long.MIN_VALUE), size);
+
+        setFilmsGenres(films);
+        setFilmsLikes(films);
+
+        return films;
+    }
+
+    @Override
+    @Transactional
     public Film create(Film film) {
         SimpleJdbcInsert simpleJdbcInsert = new SimpleJdbcInsert(jdbcTemplate)
                 .withTableName("films")
@@ -58,12 +116,16 @@ public class FilmDbStorage implements FilmStorage {
         Optional.ofNullable(film.getGenres())
                 .ifPresent(genres -> addFilmGenres(film.getId(), genres));
 
+        afterCommit(() -> popularityIndex.put(film.getId(), film.getRate()));
+
         log.info("Saved: {}", film);
 
         return film;
     }
 
+    // Film and its genres are changed in one commit, readers never see the film without genres
     @Override
+    @Transactional(isolation = Isolation.READ_COMMITTED)
     public Film update(Film film) {
         String sqlQuery =
                 "UPDATE films " +
@@ -71,7 +133,6 @@ public class FilmDbStorage implements FilmStorage {
                     "description = ?, " +
                     "release_date = ?, " +
                     "duration = ?, " +
-                    "rate = ?, " +
                     "mpa_id = ? " +
                 "WHERE film_id = ?;";
 
@@ -80,14 +141,15 @@ public class FilmDbStorage implements FilmStorage {
                 film.getDescription(),
                 film.getReleaseDate(),
                 film.getDuration(),
-                film.getRate(),
                 film.getMpa().getId(),
                 film.getId());
 
-        //Update film genres
-        deleteFilmGenres(film.getId());
-        Optional.ofNullable(film.getGenres())
-                .ifPresent(genres -> addFilmGenres(film.getId(), genres));
+        // Rate is changed only by likes, the updated film gets the one stored under the row lock
+        film.setRate(jdbcTemplate.queryForObject("SELECT COALESCE(rate, 0) FROM films WHERE film_id = ?;",
+                Integer.class, film.getId()));
+
+        // Film row is locked by the UPDATE above, so concurrent updates of the film compare genres one by one
+        updateFilmGenres(film.getId(), Optional.ofNullable(film.getGenres()).orElse(Set.of()));
 
         log.info("Updated: {}", film);
 
@@ -96,19 +158,21 @@ public class FilmDbStorage implements FilmStorage {
 
     @Override
     public Film getById(Long filmId) {
+        // Film, its genres and likes are fetched in one round trip
         String sqlQuery =
-                "SELECT f.*, m.mpa_name " +
+                "SELECT f.*, " +
+                    "(SELECT ARRAY_AGG(fg.genre_id ORDER BY fg.genre_id) " +
+                    "FROM film_genre fg " +
+                    "WHERE fg.film_id = f.film_id) AS genre_ids, " +
+                    "(SELECT ARRAY_AGG(l.user_id ORDER BY l.user_id) " +
+                    "FROM likes l " +
+                    "WHERE l.film_id = f.film_id) AS like_user_ids " +
                 "FROM films f " +
-                "JOIN mpa m ON f.mpa_id = m.mpa_id " +
-                "WHERE film_id = ?;";
+                "WHERE f.film_id = ?;";
 
         try {
-            Film film = jdbcTemplate.queryForObject(sqlQuery, FilmMapping::mapRowToFilm, filmId);
-
-            setFilmGenres(film);
-            setFilmLikes(film);
-
-            return film;
+            return jdbcTemplate.queryForObject(sqlQuery, (rs, rowNum) ->
+                    mapRowToFilmWithGenresAndLikes(rs, mpaDictionary, genreDictionary), filmId);
 
         } catch (EmptyResultDataAccessException e) {
             throw new EntityNotFoundException(String.format("Film with ID %s does not exist", filmId));
@@ -116,66 +180,108 @@ public class FilmDbStorage implements FilmStorage {
     }
 
     @Override
+    public boolean exists(Long filmId) {
+        String sqlQuery =
+                "SELECT EXISTS (" +
+                    "SELECT 1 " +
+                    "FROM films " +
+                    "WHERE film_id = ?);";
+
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sqlQuery, Boolean.class, filmId));
+    }
+
+    @Override
+    @Transactional
     public void addLike(Film film, Long userId) {
-        String checkSqlQuery =
-                "SELECT film_id " +
-                "FROM likes " +
-                "WHERE user_id = ? " +
-                        "AND film_id = ?;";
+        LikeWriteBuffer buffer = likeWriteBuffer.getIfAvailable();
+        if (buffer != null) {
+            buffer.addLike(film.getId(), userId);
+            return;
+        }
 
         String sqlQuery =
-                "INSERT INTO likes " +
+                "INSERT INTO likes (user_id, film_id) " +
                 "VALUES (?, ?);";
 
-        if (!jdbcTemplate
-                .query(checkSqlQuery, (rs, n) -> rs.getLong("film_id"), userId, film.getId())
-                .isEmpty()) {
+        // Duplicate like is rejected by favorite_user_film_pk
+        try {
+            jdbcTemplate.update(sqlQuery, userId, film.getId());
+        } catch (DuplicateKeyException e) {
             throw new DuplicateException(String.format("Like on filmId %s from userId %s already exist",
                     film.getId(), userId));
         }
 
-        jdbcTemplate.update(sqlQuery, userId, film.getId());
+        changeRate(film.getId(), 1);
+        afterCommit(() -> rateChanged(Map.of(film.getId(), 1)));
 
         log.info("Like added: userId = {}, filmId = {}", userId, film.getId());
     }
 
     @Override
+    @Transactional
     public void deleteLike(Film film, Long userId) {
-        String checkSqlQuery =
-                "SELECT film_id " +
-                "FROM likes " +
-                "WHERE user_id = ? " +
-                        "AND film_id = ?;";
+        LikeWriteBuffer buffer = likeWriteBuffer.getIfAvailable();
+        if (buffer != null) {
+            buffer.deleteLike(film.getId(), userId);
+            return;
+        }
 
         String sqlQuery =
                 "DELETE FROM likes " +
                 "WHERE user_id = ? " +
                         "AND film_id = ?;";
 
-        if (jdbcTemplate
-                .query(checkSqlQuery, (rs, n) -> rs.getLong("film_id"), userId, film.getId())
-                .isEmpty()) {
+        if (jdbcTemplate.update(sqlQuery, userId, film.getId()) == 0) {
             throw new EntityNotFoundException(String.format("Like on filmId %s from userId %s not found",
                     film.getId(), userId));
         }
 
-        jdbcTemplate.update(sqlQuery,
-                userId,
-                film.getId());
+        changeRate(film.getId(), -1);
+        afterCommit(() -> rateChanged(Map.of(film.getId(), -1)));
 
         log.info("Like deleted: userId = {}, filmId = {}", userId, film.getId());
     }
 
     @Override
     public List<Film> showMostPopularFilms(Integer count) {
-        String sqlQuery =
-                "SELECT f.*, m.mpa_name " +
-                "FROM films f " +
-                "JOIN mpa m ON f.mpa_id = m.mpa_id " +
-                "ORDER BY f.rate DESC, f.film_id DESC " +
-                "LIMIT ?;";
+        // Ranking is taken from the index, only the top films are read from database
+        while (true) {
+            List<Long> filmIds = popularityIndex.top(count);
+            List<Film> films = findByIds(filmIds);
+
+            if (films.size() == filmIds.size()) {
+                return films;
+            }
+
+            // Drop films which were removed from database bypassing the storage
+            Set<Long> foundIds = films.stream()
+                    .map(Film::getId)
+                    .collect(Collectors.toSet());
+            filmIds.stream()
+                    .filter(filmId -> !foundIds.contains(filmId))
+                    .forEach(popularityIndex::remove);
+        }
+    }
+
+    @Override
+    public List<Film> findByIds(List<Long> filmIds) {
+        Map<Long, Film> tmpFilmMap = new HashMap<>();
+
+        for (List<Long> chunk : partition(filmIds, IN_CHUNK_SIZE)) {
+            String sqlQuery =
+                    "SELECT f.* " +
+                    "FROM films f " +
+                    "WHERE f.film_id IN (" + placeholders(chunk.size()) + ");";
+
+            jdbcTemplate.query(sqlQuery, this::mapRowToFilm, chunk.toArray())
+                    .forEach(film -> tmpFilmMap.put(film.getId(), film));
+        }
 
-        List<Film> films = jdbcTemplate.query(sqlQuery, FilmMapping::mapRowToFilm, count);
+        // Keep order of requested ids
+        List<Film> films = filmIds.stream()
+                .map(tmpFilmMap::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
 
         setFilmsGenres(films);
         setFilmsLikes(films);
@@ -183,7 +289,33 @@ public class FilmDbStorage implements FilmStorage {
         return films;
     }
 
-    private void addFilmGenres(Long filmId, Set<Genre> genres) {
+    // Films are read by keyset pages, a connection is taken only for the queries of a page
+    // and isn't held while the consumer writes films to a slow client
+    @Override
+    public void exportAll(Consumer<Film> consumer) {
+        Long cursor = null;
+
+        while (true) {
+            List<Film> films = findAll(cursor, EXPORT_PAGE_SIZE);
+            films.forEach(consumer);
+
+            if (films.size() < EXPORT_PAGE_SIZE) {
+                return;
+            }
+            cursor = films.get(films.size() - 1).getId();
+        }
+    }
+
+    @Override
+    public void addRateListener(Consumer<Map<Long, Integer>> listener) {
+        rateListeners.add(listener);
+    }
+
+    private Film mapRowToFilm(ResultSet rs, int rowNum) throws SQLException {
+        return FilmMapping.mapRowToFilm(rs, mpaDictionary);
+    }
+
+    private void addFilmGenres(Long filmId, Collection<Genre> genres) {
         List<Genre> filmGenres = new ArrayList<>(genres);
         String sqlQuery =
                 "INSERT INTO film_genre " +
@@ -205,100 +337,102 @@ public class FilmDbStorage implements FilmStorage {
                 });
     }
 
-    private void deleteFilmGenres(Long filmId) {
+    // Only changed genres are written, usually a film is edited without touching them
+    private void updateFilmGenres(Long filmId, Set<Genre> genres) {
         String sqlQuery =
-                "DELETE FROM film_genre " +
+                "SELECT genre_id " +
+                "FROM film_genre " +
                 "WHERE film_id = ?;";
 
-        jdbcTemplate.update(sqlQuery, filmId);
+        Set<Integer> storedIds = new HashSet<>(jdbcTemplate.queryForList(sqlQuery, Integer.class, filmId));
+        Set<Integer> newIds = genres.stream()
+                .map(Genre::getId)
+                .collect(Collectors.toSet());
+
+        if (storedIds.equals(newIds)) {
+            return;
+        }
+
+        List<Integer> removedIds = storedIds.stream()
+                .filter(genreId -> !newIds.contains(genreId))
+                .collect(Collectors.toList());
+        if (!removedIds.isEmpty()) {
+            deleteFilmGenres(filmId, removedIds);
+        }
+
+        List<Genre> addedGenres = genres.stream()
+                .filter(genre -> !storedIds.contains(genre.getId()))
+                .collect(Collectors.toList());
+        if (!addedGenres.isEmpty()) {
+            addFilmGenres(filmId, addedGenres);
+        }
     }
 
-    private void setFilmLikes(Film film) {
+    private void deleteFilmGenres(Long filmId, List<Integer> genreIds) {
         String sqlQuery =
-                "SELECT user_id " +
-                "FROM likes " +
+                "DELETE FROM film_genre " +
                 "WHERE film_id = ? " +
-                "ORDER BY user_id DESC;";
+                    "AND genre_id IN (" + placeholders(genreIds.size()) + ");";
 
-        jdbcTemplate.query(sqlQuery, rs -> {
-            film.addLikeFromUserId(rs.getLong("user_id"));
-        }, film.getId());
+        List<Object> args = new ArrayList<>(genreIds.size() + 1);
+        args.add(filmId);
+        args.addAll(genreIds);
+
+        jdbcTemplate.update(sqlQuery, args.toArray());
     }
 
     private void setFilmsLikes(List<Film> films) {
-        String sqlQuery =
-                "SELECT * " +
-                "FROM likes;";
-
         Map<Long, Film> tmpFilmMap = films.stream()
                 .collect(Collectors.toMap(Film::getId, film -> film));
 
-        jdbcTemplate.query(sqlQuery, rs -> {
-            Long filmId = rs.getLong("film_id");
-            Long userId = rs.getLong("user_id");
-
-            Optional.ofNullable(tmpFilmMap.get(filmId))
-                    .ifPresent(film -> film.addLikeFromUserId(userId));
-        });
-    }
+        for (List<Long> filmIds : partition(new ArrayList<>(tmpFilmMap.keySet()), IN_CHUNK_SIZE)) {
+            String sqlQuery =
+                    "SELECT film_id, user_id " +
+                    "FROM likes " +
+                    "WHERE film_id IN (" + placeholders(filmIds.size()) + ");";
 
-    private void setFilmGenres(Film film) {
-        String sqlQuery =
-                "SELECT g.* " +
-                "FROM film_genre fg " +
-                "LEFT JOIN genres g ON fg.genre_id = g.genre_id " +
-                "WHERE fg.film_id = ? " +
-                "ORDER BY g.genre_id;";
+            jdbcTemplate.query(sqlQuery, rs -> {
+                Long filmId = rs.getLong("film_id");
+                Long userId = rs.getLong("user_id");
 
-        jdbcTemplate.query(sqlQuery, rs -> {
-            Genre genre = mapRowToGenre(rs);
-            film.addGenre(genre);
-        }, film.getId());
+                tmpFilmMap.get(filmId).addLikeFromUserId(userId);
+            }, filmIds.toArray());
+        }
     }
 
     private void setFilmsGenres(List<Film> films) {
-        String sqlQuery =
-                "SELECT fg.film_id, g.* " +
-                "FROM film_genre fg " +
-                "LEFT JOIN genres g ON fg.genre_id = g.genre_id;";
-
         Map<Long, Film> tmpFilmMap = films.stream()
                 .collect(Collectors.toMap(Film::getId, film -> film));
 
-        jdbcTemplate.query(sqlQuery, rs -> {
-            Long filmId = rs.getLong("film_id");
-            Genre genre = mapRowToGenre(rs);
+        for (List<Long> filmIds : partition(new ArrayList<>(tmpFilmMap.keySet()), IN_CHUNK_SIZE)) {
+            String sqlQuery =
+                    "SELECT film_id, genre_id " +
+                    "FROM film_genre " +
+                    "WHERE film_id IN (" + placeholders(filmIds.size()) + ");";
 
-            Optional.ofNullable(tmpFilmMap.get(filmId))
-                    .ifPresent(film -> film.addGenre(genre));
-        });
+            jdbcTemplate.query(sqlQuery, rs -> {
+                Long filmId = rs.getLong("film_id");
+                Genre genre = genreDictionary.getById(rs.getInt("genre_id"));
+
+                tmpFilmMap.get(filmId).addGenre(genre);
+            }, filmIds.toArray());
+        }
     }
 
-    public void updateRate(Film film) {
+    private void rateChanged(Map<Long, Integer> rateDeltas) {
+        rateDeltas.forEach(popularityIndex::adjust);
+        rateListeners.forEach(listener -> listener.accept(rateDeltas));
+    }
+
+    private void changeRate(Long filmId, int delta) {
+        // Rate is changed in SQL to not lose concurrent updates
         String sqlQuery =
                 "UPDATE films " +
-                "SET rate = ? " +
+                "SET rate = COALESCE(rate, 0) + ? " +
                 "WHERE film_id = ?;";
 
-        jdbcTemplate.update(sqlQuery,
-                film.getRate(),
-                film.getId());
-
-        log.info("Rate was updated: {}", film);
-    }
-
-    @Override
-    public List<Film> searchFilmByTitle(String filter) {
-        String sqlQuery = "SELECT f.*, m.mpa_name " +
-                "FROM films f " +
-                "JOIN mpa m ON f.mpa_id = m.mpa_id " +
-                "WHERE LOWER(f.film_name) LIKE LOWER(?)" +
-                "ORDER BY f.rate DESC";
-
-        List<Film> films = jdbcTemplate.query(sqlQuery, FilmMapping::mapRowToFilm, "%"+filter+"%");
-        setFilmsGenres(films);
-        setFilmsLikes(films);
+        jdbcTemplate.update(sqlQuery, delta, filmId);
 
-        return films;
+        log.info("Rate was changed: filmId = {}, delta = {}", filmId, delta);
     }
 }
@@ -0,0 +1,281 @@
+package ru.yandex.practicum.filmorate.dao;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.*;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.lang.Nullable;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+// JdbcTemplate recording execution time and rows of every statement, named by the storage method running it
+@Slf4j
+public class InstrumentedJdbcTemplate extends JdbcTemplate {
+    // IN (?, ?, ...) lists of different length are the same statement
+    private static final Pattern IN_LIST = Pattern.compile("\\(\\s*\\?(\\s*,\\s*\\?)*\\s*\\)");
+
+    private final long slowQueryThresholdNanos;
+    // Exact SQL is normalized only once, later calls cost one map lookup
+    private final ConcurrentMap<String, String> normalizedSql = new ConcurrentHashMap<>();
+    // The same SQL run by different methods is different statements
+    private final ConcurrentMap<String, QueryStatistics> byStatement = new ConcurrentHashMap<>();
+
+    public InstrumentedJdbcTemplate(DataSource dataSource, Duration slowQueryThreshold) {
+        super(dataSource);
+        this.slowQueryThresholdNanos = slowQueryThreshold.toNanos();
+    }
+
+    @Override
+    public <T> T query(PreparedStatementCreator psc, PreparedStatementSetter pss, ResultSetExtractor<T> rse) {
+        QueryStatistics statistics = statisticsOf(sqlOf(psc));
+        RowCounter counter = new RowCounter();
+
+        return record(statistics, counter, () -> super.query(psc, pss, counter.wrap(rse)));
+    }
+
+    @Override
+    public <T> T query(String sql, ResultSetExtractor<T> rse) {
+        QueryStatistics statistics = statisticsOf(sql);
+        RowCounter counter = new RowCounter();
+
+        return record(statistics, counter, () -> super.query(sql, counter.wrap(rse)));
+    }
+
+    // Row callbacks are counted by the extractor running them, as the Spring one is private
+    @Override
+    public void query(String sql, RowCallbackHandler rch) {
+        query(sql, new RowCallbackExtractor(rch));
+    }
+
+    @Override
+    public void query(String sql, @Nullable PreparedStatementSetter pss, RowCallbackHandler rch) {
+        query(sql, pss, new RowCallbackExtractor(rch));
+    }
+
+    @Override
+    public void query(PreparedStatementCreator psc, RowCallbackHandler rch) {
+        query(psc, new RowCallbackExtractor(rch));
+    }
+
+    @Override
+    protected int update(PreparedStatementCreator psc, PreparedStatementSetter pss) {
+        RowCounter counter = new RowCounter();
+
+        return record(statisticsOf(sqlOf(psc)), counter, () -> counter.updated(super.update(psc, pss)));
+    }
+
+    @Override
+    public int update(PreparedStatementCreator psc, KeyHolder generatedKeyHolder) {
+        RowCounter counter = new RowCounter();
+
+        return record(statisticsOf(sqlOf(psc)), counter,
+                () -> counter.updated(super.update(psc, generatedKeyHolder)));
+    }
+
+    @Override
+    public int update(String sql) {
+        RowCounter counter = new RowCounter();
+
+        return record(statisticsOf(sql), counter, () -> counter.updated(super.update(sql)));
+    }
+
+    @Override
+    public int[] batchUpdate(String sql, BatchPreparedStatementSetter pss) {
+        RowCounter counter = new RowCounter();
+
+        return record(statisticsOf(sql), counter, () -> {
+            int[] updated = super.batchUpdate(sql, pss);
+            Arrays.stream(updated).filter(count -> count > 0).forEach(counter::updated);
+            return updated;
+        });
+    }
+
+    // Statements with the largest total time first
+    public List<QueryStatistics> slowestStatements(int count) {
+        return byStatement.values().stream()
+                .sorted(Comparator.comparingLong(QueryStatistics::getTotalNanos).reversed())
+                .limit(Math.max(count, 0))
+                .collect(Collectors.toList());
+    }
+
+    public void resetStatistics() {
+        normalizedSql.clear();
+        byStatement.clear();
+    }
+
+    private <T> T record(QueryStatistics statistics, RowCounter counter, Supplier<T> execution) {
+        long start = System.nanoTime();
+        try {
+            return execution.get();
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            statistics.add(elapsed, counter.rowsRead, counter.rowsMapped);
+
+            if (elapsed >= slowQueryThresholdNanos) {
+                log.warn("Slow statement {} took {} ms, rows read {}: {}", statistics.getName(),
+                        elapsed / 1_000_000, counter.rowsRead, statistics.getSql());
+            }
+        }
+    }
+
+    private QueryStatistics statisticsOf(String sql) {
+        String normalized = normalizedSql.computeIfAbsent(sql == null ? "<unknown>" : sql,
+                exactSql -> IN_LIST.matcher(exactSql).replaceAll("(?...)"));
+        String name = callerName();
+
+        return byStatement.computeIfAbsent(name + "\n" + normalized,
+                statement -> new QueryStatistics(name, normalized));
+    }
+
+    private static String sqlOf(PreparedStatementCreator psc) {
+        return psc instanceof SqlProvider ? ((SqlProvider) psc).getSql() : null;
+    }
+
+    // First application frame outside of this class, e.g. FilmDbStorage.setFilmsLikes
+    private static String callerName() {
+        return StackWalker.getInstance().walk(frames -> frames
+                .filter(frame -> frame.getClassName().startsWith("ru.yandex.practicum.filmorate")
+                        && !frame.getClassName().startsWith(InstrumentedJdbcTemplate.class.getName()))
+                .findFirst()
+                .map(frame -> simpleName(frame.getClassName()) + "." + methodName(frame.getMethodName()))
+                .orElse("<unknown>"));
+    }
+
+    private static String simpleName(String className) {
+        String name = className.substring(className.lastIndexOf('.') + 1);
+        int nested = name.indexOf('$');
+
+        return nested < 0 ? name : name.substring(0, nested);
+    }
+
+    // lambda$flush$0 is a part of flush
+    private static String methodName(String methodName) {
+        if (methodName.startsWith("lambda$")) {
+            int end = methodName.indexOf('$', "lambda$".length());
+            return methodName.substring("lambda$".length(), end < 0 ? methodName.length() : end);
+        }
+
+        return methodName;
+    }
+
+    private static class RowCounter {
+        private long rowsRead;
+        private long rowsMapped;
+
+        // ResultSet is passed as is, rows are taken from the extractor or its result.
+        // Custom extractors read rows themselves, only rows they return are counted for them
+        private <T> ResultSetExtractor<T> wrap(ResultSetExtractor<T> rse) {
+            return rs -> {
+                T result = rse.extractData(rs);
+
+                if (rse instanceof RowCallbackExtractor) {
+                    rowsRead = ((RowCallbackExtractor) rse).rows;
+                    rowsMapped = rowsRead;
+                } else if (rse instanceof RowMapperResultSetExtractor) {
+                    rowsRead = ((List<?>) result).size();
+                    rowsMapped = rowsRead;
+                } else if (result instanceof Collection) {
+                    rowsMapped = ((Collection<?>) result).size();
+                } else if (result instanceof Map) {
+                    rowsMapped = ((Map<?, ?>) result).size();
+                }
+
+                return result;
+            };
+        }
+
+        private int updated(int count) {
+            rowsRead += count;
+            rowsMapped += count;
+            return count;
+        }
+    }
+
+    private static class RowCallbackExtractor implements ResultSetExtractor<Object> {
+        private final RowCallbackHandler rch;
+        private long rows;
+
+        private RowCallbackExtractor(RowCallbackHandler rch) {
+            this.rch = rch;
+        }
+
+        @Override
+        public Object extractData(ResultSet rs) throws SQLException {
+            while (rs.next()) {
+                rch.processRow(rs);
+                rows++;
+            }
+            return null;
+        }
+    }
+
+    public static class QueryStatistics {
+        private final String name;
+        private final String sql;
+        private final LongAdder executions = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final LongAdder rowsRead = new LongAdder();
+        private final LongAdder rowsMapped = new LongAdder();
+
+        private QueryStatistics(String name, String sql) {
+            this.name = name;
+            this.sql = sql;
+        }
+
+        private void add(long nanos, long read, long mapped) {
+            executions.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+            rowsRead.add(read);
+            rowsMapped.add(mapped);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public long getExecutions() {
+            return executions.sum();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        public double getTotalMs() {
+            return totalNanos.sum() / 1_000_000.0;
+        }
+
+        public double getAverageMs() {
+            long count = executions.sum();
+            return count == 0 ? 0 : getTotalMs() / count;
+        }
+
+        public double getMaxMs() {
+            return maxNanos.get() / 1_000_000.0;
+        }
+
+        public long getRowsRead() {
+            return rowsRead.sum();
+        }
+
+        public long getRowsMapped() {
+            return rowsMapped.sum();
+        }
+    }
+}
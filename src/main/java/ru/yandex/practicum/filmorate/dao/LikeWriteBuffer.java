@@ -0,0 +1,270 @@
+package ru.yandex.practicum.filmorate.dao;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "filmorate.likes.write-behind.enabled", havingValue = "true")
+public class LikeWriteBuffer {
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final long flushIntervalMs;
+    private final int flushSize;
+    private final Path fallbackFile;
+    private final Timer flushTimer;
+    private final Counter flushedEvents;
+
+    // Only the last event for (user, film) is kept: true - like, false - unlike
+    private final ConcurrentMap<LikeKey, Boolean> pending = new ConcurrentHashMap<>();
+    private final List<Consumer<Map<Long, Integer>>> flushListeners = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "like-write-buffer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public LikeWriteBuffer(JdbcTemplate jdbcTemplate,
+                           TransactionTemplate transactionTemplate,
+                           MeterRegistry meterRegistry,
+                           @Value("${filmorate.likes.write-behind.flush-interval-ms:200}") long flushIntervalMs,
+                           @Value("${filmorate.likes.write-behind.flush-size:500}") int flushSize,
+                           @Value("${filmorate.likes.write-behind.fallback-file:./db/pending-likes.csv}")
+                           String fallbackFile) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.flushIntervalMs = flushIntervalMs;
+        this.flushSize = flushSize;
+        this.fallbackFile = Paths.get(fallbackFile);
+
+        Gauge.builder("filmorate.likes.buffer.depth", pending, Map::size)
+                .description("Like events waiting for flush")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("filmorate.likes.buffer.flush")
+                .description("Like buffer flush latency")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.flushedEvents = Counter.builder("filmorate.likes.buffer.flushed")
+                .description("Like events written to database")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        restoreFallback();
+        executor.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(flushIntervalMs * 10, TimeUnit.MILLISECONDS);
+
+        flushQuietly();
+        saveFallback();
+    }
+
+    public void addLike(Long filmId, Long userId) {
+        offer(new LikeKey(userId, filmId), true);
+    }
+
+    public void deleteLike(Long filmId, Long userId) {
+        offer(new LikeKey(userId, filmId), false);
+    }
+
+    // Listener receives rate delta by filmId after each successful flush,
+    // films with flushed events are all present, even if their delta is 0
+    public void addFlushListener(Consumer<Map<Long, Integer>> listener) {
+        flushListeners.add(listener);
+    }
+
+    public int getDepth() {
+        return pending.size();
+    }
+
+    public synchronized void flush() {
+        List<LikeKey> likes = new ArrayList<>();
+        List<LikeKey> unlikes = new ArrayList<>();
+
+        // Event is taken only if it wasn't replaced by a newer one meanwhile
+        for (Map.Entry<LikeKey, Boolean> event : pending.entrySet()) {
+            if (pending.remove(event.getKey(), event.getValue())) {
+                (event.getValue() ? likes : unlikes).add(event.getKey());
+            }
+        }
+
+        if (likes.isEmpty() && unlikes.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            Map<Long, Integer> rateDeltas = transactionTemplate.execute(status -> writeEvents(likes, unlikes));
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            flushedEvents.increment(likes.size() + unlikes.size());
+
+            log.debug("Like buffer flushed: likes = {}, unlikes = {}", likes.size(), unlikes.size());
+            flushListeners.forEach(listener -> listener.accept(rateDeltas));
+
+        } catch (RuntimeException e) {
+            // Return events back unless newer ones were added
+            likes.forEach(key -> pending.putIfAbsent(key, true));
+            unlikes.forEach(key -> pending.putIfAbsent(key, false));
+            throw e;
+        }
+    }
+
+    private Map<Long, Integer> writeEvents(List<LikeKey> likes, List<LikeKey> unlikes) {
+        // Likes of missing users/films and already existing likes are skipped
+        String insertLike =
+                "INSERT INTO likes (user_id, film_id) " +
+                "SELECT u.user_id, f.film_id " +
+                "FROM users u, films f " +
+                "WHERE u.user_id = ? " +
+                    "AND f.film_id = ? " +
+                    "AND NOT EXISTS (SELECT 1 FROM likes l WHERE l.user_id = u.user_id AND l.film_id = f.film_id);";
+
+        String deleteLike =
+                "DELETE FROM likes " +
+                "WHERE user_id = ? " +
+                        "AND film_id = ?;";
+
+        String changeRate =
+                "UPDATE films " +
+                "SET rate = COALESCE(rate, 0) + ? " +
+                "WHERE film_id = ?;";
+
+        Map<Long, Integer> rateDeltas = new HashMap<>();
+
+        if (!likes.isEmpty()) {
+            int[] inserted = jdbcTemplate.batchUpdate(insertLike, toBatchArgs(likes));
+            for (int i = 0; i < inserted.length; i++) {
+                rateDeltas.merge(likes.get(i).getFilmId(), inserted[i], Integer::sum);
+            }
+        }
+
+        if (!unlikes.isEmpty()) {
+            int[] deleted = jdbcTemplate.batchUpdate(deleteLike, toBatchArgs(unlikes));
+            for (int i = 0; i < deleted.length; i++) {
+                rateDeltas.merge(unlikes.get(i).getFilmId(), -deleted[i], Integer::sum);
+            }
+        }
+
+        List<Object[]> rateChanges = rateDeltas.entrySet().stream()
+                .filter(delta -> delta.getValue() != 0)
+                .map(delta -> new Object[]{delta.getValue(), delta.getKey()})
+                .collect(Collectors.toList());
+        if (!rateChanges.isEmpty()) {
+            jdbcTemplate.batchUpdate(changeRate, rateChanges);
+        }
+
+        return rateDeltas;
+    }
+
+    private void offer(LikeKey key, boolean like) {
+        pending.put(key, like);
+
+        if (executor.isShutdown()) {
+            // Context is closing and nothing flushes anymore, events are kept in the fallback file
+            saveFallback();
+        } else if (pending.size() >= flushSize && flushRequested.compareAndSet(false, true)) {
+            try {
+                executor.execute(() -> {
+                    flushRequested.set(false);
+                    flushQuietly();
+                });
+            } catch (RejectedExecutionException e) {
+                flushRequested.set(false);
+                saveFallback();
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Like buffer flush failed, {} events are kept", pending.size(), e);
+        }
+    }
+
+    private List<Object[]> toBatchArgs(List<LikeKey> keys) {
+        return keys.stream()
+                .map(key -> new Object[]{key.getUserId(), key.getFilmId()})
+                .collect(Collectors.toList());
+    }
+
+    // Synchronized with flush, so events taken by a running flush are not missed
+    private synchronized void saveFallback() {
+        if (pending.isEmpty()) {
+            // Events saved by late likes may have been flushed since
+            try {
+                Files.deleteIfExists(fallbackFile);
+            } catch (IOException e) {
+                log.error("Like buffer could not delete flushed events from {}", fallbackFile, e);
+            }
+            return;
+        }
+
+        List<String> lines = pending.entrySet().stream()
+                .map(event -> String.format("%s,%s,%s",
+                        event.getKey().getUserId(), event.getKey().getFilmId(), event.getValue()))
+                .collect(Collectors.toList());
+
+        try {
+            Files.createDirectories(fallbackFile.toAbsolutePath().getParent());
+            Files.write(fallbackFile, lines);
+            log.warn("Like buffer saved {} unflushed events to {}", lines.size(), fallbackFile);
+        } catch (IOException e) {
+            log.error("Like buffer lost {} unflushed events: {}", lines.size(), lines, e);
+        }
+    }
+
+    private void restoreFallback() {
+        if (!Files.exists(fallbackFile)) {
+            return;
+        }
+
+        try {
+            for (String line : Files.readAllLines(fallbackFile)) {
+                String[] event = line.split(",");
+                pending.putIfAbsent(new LikeKey(Long.parseLong(event[0]), Long.parseLong(event[1])),
+                        Boolean.parseBoolean(event[2]));
+            }
+
+            Files.delete(fallbackFile);
+            log.info("Like buffer restored {} events from {}", pending.size(), fallbackFile);
+        } catch (IOException e) {
+            log.error("Like buffer could not restore events from {}", fallbackFile, e);
+        }
+    }
+
+    @lombok.Value
+    private static class LikeKey {
+        long userId;
+        long filmId;
+    }
+}
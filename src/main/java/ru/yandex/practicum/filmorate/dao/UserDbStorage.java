@@ -6,6 +6,8 @@ import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.dao.utils.FriendshipMapping;
 import ru.yandex.practicum.filmorate.dao.utils.UserMapping;
 import ru.yandex.practicum.filmorate.exception.EntityNotFoundException;
@@ -13,14 +15,17 @@ import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.model.enums.FriendStatus;
+import ru.yandex.practicum.filmorate.storage.user.FriendIndex;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
-import java.util.List;
-import java.util.Map;
-import java.util.Optional;
+import javax.annotation.PostConstruct;
+import java.util.*;
 import java.util.stream.Collectors;
 
-import static ru.yandex.practicum.filmorate.dao.utils.FriendshipMapping.mapRowToFriendship;
+import static ru.yandex.practicum.filmorate.dao.utils.SqlUtils.IN_CHUNK_SIZE;
+import static ru.yandex.practicum.filmorate.dao.utils.SqlUtils.partition;
+import static ru.yandex.practicum.filmorate.dao.utils.SqlUtils.placeholders;
+import static ru.yandex.practicum.filmorate.dao.utils.TransactionUtils.afterCommit;
 import static ru.yandex.practicum.filmorate.dao.utils.UserMapping.mapUserToRow;
 import static ru.yandex.practicum.filmorate.model.enums.FriendStatus.APPROVED;
 import static ru.yandex.practicum.filmorate.model.enums.FriendStatus.REQUESTED;
@@ -31,16 +36,74 @@ import static ru.yandex.practicum.filmorate.model.enums.FriendStatus.REQUESTED;
 public class UserDbStorage implements UserStorage {
 
     private final JdbcTemplate jdbcTemplate;
+    private final FriendIndex friendIndex = new FriendIndex();
+
+    @PostConstruct
+    public void loadFriendIndex() {
+        String sqlQuery =
+                "SELECT user_id, friend_id " +
+                "FROM friendship " +
+                "ORDER BY user_id, friend_id;";
+
+        friendIndex.clear();
+        jdbcTemplate.query(sqlQuery, rs -> {
+            Long userId = null;
+            long[] friendIds = new long[16];
+            int count = 0;
+
+            while (rs.next()) {
+                long currentUserId = rs.getLong("user_id");
+                if (userId != null && userId != currentUserId) {
+                    friendIndex.putAll(userId, Arrays.copyOf(friendIds, count));
+                    count = 0;
+                }
+                if (count == friendIds.length) {
+                    friendIds = Arrays.copyOf(friendIds, count * 2);
+                }
+
+                userId = currentUserId;
+                friendIds[count++] = rs.getLong("friend_id");
+            }
+
+            if (userId != null) {
+                friendIndex.putAll(userId, Arrays.copyOf(friendIds, count));
+            }
+            return null;
+        });
+
+        log.info("Friend index loaded: {} users", friendIndex.size());
+    }
 
     @Override
-    public List<User> findAll() {
+    public List<User> findAll(boolean withFriends) {
         String sqlQuery =
                 "SELECT * " +
                 "FROM users " +
                 "ORDER BY user_id DESC;";
 
         List<User> users = jdbcTemplate.query(sqlQuery, UserMapping::mapRowToUser);
-        setUsersFriends(users);
+        if (withFriends) {
+            setUsersFriends(users);
+        }
+
+        return users;
+    }
+
+    @Override
+    public List<User> findAll(Long cursor, Integer size, boolean withFriends) {
+        // Users are paged by user_id desc, cursor is the last id of the previous page
+        String sqlQuery =
+                "SELECT * " +
+                "FROM users " +
+                "WHERE user_id < ? " +
+                "ORDER BY user_id DESC " +
+                "LIMIT ?;";
+
+        List<User> users = jdbcTemplate.query(sqlQuery, UserMapping::mapRowToUser,
+                Optional.ofNullable(cursor).orElse(Long.MAX_VALUE), size);
+        if (withFriends) {
+            setUsersFriends(users);
+        }
 
         return users;
     }
@@ -99,10 +162,24 @@ public class UserDbStorage implements UserStorage {
     }
 
     @Override
+    public boolean exists(Long userId) {
+        String sqlQuery =
+                "SELECT EXISTS (" +
+                    "SELECT 1 " +
+                    "FROM users " +
+                    "WHERE user_id = ?);";
+
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sqlQuery, Boolean.class, userId));
+    }
+
+    // Status depends on the request of the other user, so the pair is checked and changed under row locks
+    @Override
+    @Transactional(isolation = Isolation.READ_COMMITTED)
     public void addFriend(User user, User friend) {
         FriendStatus friendStatus;
         Long userId = user.getId();
         Long friendId = friend.getId();
+        lockUsers(userId, friendId);
         List<Friendship> friendship = findFriendRequest(userId, friendId);
 
         String insertFriend =
@@ -132,15 +209,18 @@ public class UserDbStorage implements UserStorage {
                 userId,
                 friendId,
                 friendStatus.toString());
+        afterCommit(() -> friendIndex.add(userId, friendId));
 
         log.info("Friendship added: userId = {}, friendId = {}, status = {}",
                 userId, friendId, friendStatus);
     }
 
     @Override
+    @Transactional(isolation = Isolation.READ_COMMITTED)
     public void deleteFriend(User user, User friend) {
         Long userId = user.getId();
         Long friendId = friend.getId();
+        lockUsers(userId, friendId);
         List<Friendship> friendship = findFriendRequest(userId, friendId);
 
         String deleteFriendship =
@@ -150,18 +230,23 @@ public class UserDbStorage implements UserStorage {
 
         if (friendship.contains(new Friendship(userId, friendId, REQUESTED))) {
             jdbcTemplate.update(deleteFriendship, userId, friendId);
+            afterCommit(() -> friendIndex.remove(userId, friendId));
 
         } else if (friendship.contains(new Friendship(userId, friendId, APPROVED))) {
             jdbcTemplate.update(deleteFriendship, userId, friendId);
+            afterCommit(() -> friendIndex.remove(userId, friendId));
 
+            // Only the request of the former friend becomes unanswered, not all of their friendships
             String updateFriend =
                     "UPDATE friendship " +
                     "SET friend_status = ? " +
-                    "WHERE user_id = ?;";
+                    "WHERE user_id = ? " +
+                            "AND friend_id = ?;";
 
             jdbcTemplate.update(updateFriend,
                     REQUESTED.toString(),
-                    friendId);
+                    friendId,
+                    userId);
         } else {
             throw new ValidationException(String.format("UserId %s and friendId %s already in friendship",
                     userId, friendId));
@@ -171,7 +256,7 @@ public class UserDbStorage implements UserStorage {
     }
 
     @Override
-    public List<User> showFriends(User user) {
+    public List<User> showFriends(User user, boolean withFriends) {
         String sqlQuery =
                 "SELECT u.* " +
                 "FROM friendship fs " +
@@ -180,27 +265,56 @@ public class UserDbStorage implements UserStorage {
                 "ORDER BY u.user_id DESC;";
 
         List<User> users = jdbcTemplate.query(sqlQuery, UserMapping::mapRowToUser, user.getId());
-        setUsersFriends(users);
+        if (withFriends) {
+            setUsersFriends(users);
+        }
 
         return users;
     }
 
     @Override
-    public List<User> showCommonFriends(User user, User friend) {
-        String sqlQuery = "SELECT u.* " +
-                "FROM friendship fs " +
-                "JOIN users u ON fs.friend_id = u.user_id " +
-                "WHERE fs.user_id = ? OR fs.user_id = ?" +
-                "GROUP BY fs.friend_id " +
-                "HAVING COUNT(fs.user_id) > 1;";
+    public List<User> showCommonFriends(User user, User friend, boolean withFriends) {
+        List<Long> commonIds = Arrays.stream(friendIndex.commonFriends(user.getId(), friend.getId()))
+                .boxed()
+                .collect(Collectors.toList());
+
+        List<User> users = findByIds(commonIds);
+        if (withFriends) {
+            users.forEach(commonFriend -> Arrays.stream(friendIndex.friendsOf(commonFriend.getId()))
+                    .forEach(commonFriend::addFriend));
+        }
 
+        return users;
+    }
+
+    private List<User> findByIds(List<Long> ids) {
+        List<User> users = new ArrayList<>(ids.size());
 
-        List<User> users = jdbcTemplate.query(sqlQuery, UserMapping::mapRowToUser, user.getId(), friend.getId());
-        setUsersFriends(users);
+        for (List<Long> chunk : partition(ids, IN_CHUNK_SIZE)) {
+            String sqlQuery =
+                    "SELECT * " +
+                    "FROM users " +
+                    "WHERE user_id IN (" + placeholders(chunk.size()) + ");";
+
+            users.addAll(jdbcTemplate.query(sqlQuery, UserMapping::mapRowToUser, chunk.toArray()));
+        }
+        users.sort(Comparator.comparing(User::getId).reversed());
 
         return users;
     }
 
+    // Users are locked in id order, so requests for the same pair wait for each other without deadlock
+    private void lockUsers(Long userId, Long friendId) {
+        String sqlQuery =
+                "SELECT user_id " +
+                "FROM users " +
+                "WHERE user_id IN (?, ?) " +
+                "ORDER BY user_id " +
+                "FOR UPDATE;";
+
+        jdbcTemplate.queryForList(sqlQuery, Long.class, userId, friendId);
+    }
+
     private List<Friendship> findFriendRequest(Long userId, Long friendId) {
         String findFriendRequest =
                 "SELECT * " +
@@ -225,17 +339,23 @@ public class UserDbStorage implements UserStorage {
     }
 
     private void setUsersFriends(List<User> users) {
-        String sqlQuery =
-                "SELECT * " +
-                "FROM friendship;";
+        if (users.isEmpty()) {
+            return;
+        }
 
         Map<Long, User> tmpUserMap = users.stream()
                 .collect(Collectors.toMap(User::getId, user -> user));
 
-        jdbcTemplate.query(sqlQuery, rs -> {
-            Friendship friendship = mapRowToFriendship(rs);
-            Optional.ofNullable(tmpUserMap.get(friendship.getUserId()))
-                    .ifPresent(user -> user.addFriend(friendship.getFriendId()));
-        });
+        // Only friendship rows of the users in the result are read
+        for (List<Long> chunk : partition(new ArrayList<>(tmpUserMap.keySet()), IN_CHUNK_SIZE)) {
+            String sqlQuery =
+                    "SELECT user_id, friend_id " +
+                    "FROM friendship " +
+                    "WHERE user_id IN (" + placeholders(chunk.size()) + ");";
+
+            jdbcTemplate.query(sqlQuery, rs -> {
+                tmpUserMap.get(rs.getLong("user_id")).addFriend(rs.getLong("friend_id"));
+            }, chunk.toArray());
+        }
     }
 }
@@ -1,9 +1,12 @@
 package ru.yandex.practicum.filmorate.dao.utils;
 
 import lombok.AllArgsConstructor;
+import ru.yandex.practicum.filmorate.dao.Dictionary;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.dictionary.Genre;
 import ru.yandex.practicum.filmorate.model.dictionary.Mpa;
 
+import java.sql.Array;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.HashMap;
@@ -23,7 +26,7 @@ public class FilmMapping {
         return values;
     }
 
-    public static Film mapRowToFilm(ResultSet rs, int rowNum) throws SQLException {
+    public static Film mapRowToFilm(ResultSet rs, Dictionary<Mpa> mpaDictionary) throws SQLException {
         return new Film()
                 .setId(rs.getLong("film_id"))
                 .setName(rs.getString("film_name"))
@@ -31,8 +34,31 @@ public class FilmMapping {
                 .setReleaseDate(rs.getDate("release_date").toLocalDate())
                 .setDuration(rs.getLong("duration"))
                 .setRate(rs.getInt("rate"))
-                .setMpa(new Mpa()
-                        .setId(rs.getInt("mpa_id"))
-                        .setName(rs.getString("mpa_name")));
+                .setMpa(mpaDictionary.getById(rs.getInt("mpa_id")));
+    }
+
+    public static Film mapRowToFilmWithGenresAndLikes(ResultSet rs,
+                                                      Dictionary<Mpa> mpaDictionary,
+                                                      Dictionary<Genre> genreDictionary) throws SQLException {
+        Film film = mapRowToFilm(rs, mpaDictionary);
+
+        for (Object genreId : toObjectArray(rs.getArray("genre_ids"))) {
+            film.addGenre(genreDictionary.getById(((Number) genreId).intValue()));
+        }
+
+        for (Object userId : toObjectArray(rs.getArray("like_user_ids"))) {
+            film.addLikeFromUserId(((Number) userId).longValue());
+        }
+
+        return film;
+    }
+
+    private static Object[] toObjectArray(Array array) throws SQLException {
+        // ARRAY_AGG over no rows returns NULL
+        if (array == null) {
+            return new Object[0];
+        }
+
+        return (Object[]) array.getArray();
     }
 }
@@ -0,0 +1,25 @@
+package ru.yandex.practicum.filmorate.dao.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class SqlUtils {
+
+    // Max amount of ids in one IN (...) list
+    public static final int IN_CHUNK_SIZE = 500;
+
+    public static String placeholders(int size) {
+        return String.join(", ", Collections.nCopies(size, "?"));
+    }
+
+    public static <T> List<List<T>> partition(List<T> values, int chunkSize) {
+        List<List<T>> chunks = new ArrayList<>();
+
+        for (int from = 0; from < values.size(); from += chunkSize) {
+            chunks.add(values.subList(from, Math.min(from + chunkSize, values.size())));
+        }
+
+        return chunks;
+    }
+}
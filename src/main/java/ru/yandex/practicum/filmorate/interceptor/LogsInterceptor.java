@@ -1,22 +1,148 @@
 package ru.yandex.practicum.filmorate.interceptor;
 
+import io.micrometer.core.instrument.*;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
-import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
 
+import javax.servlet.DispatcherType;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Component
 @Slf4j
-public class LogsInterceptor implements HandlerInterceptor {
+public class LogsInterceptor implements AsyncHandlerInterceptor {
+    private static final String REQUESTS = "filmorate.http.requests";
+    private static final String IN_FLIGHT = "filmorate.http.requests.active";
+    private static final String ERRORS = "filmorate.http.requests.errors";
+    private static final String SAMPLE_ATTRIBUTE = LogsInterceptor.class.getName() + ".sample";
+    private static final String ROUTE_ATTRIBUTE = LogsInterceptor.class.getName() + ".route";
+    private static final String UNKNOWN_URI = "UNKNOWN";
+
+    private final MeterRegistry meterRegistry;
+    // Meters are looked up once per route, not built on every request
+    private final ConcurrentMap<Route, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Outcome, Timer> timers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Outcome, Counter> errors = new ConcurrentHashMap<>();
+
+    @Autowired
+    public LogsInterceptor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
     @Override
     public boolean preHandle(
             HttpServletRequest request,
             HttpServletResponse response,
             Object handler) {
 
-        log.debug("Request: '{} {}'", request.getMethod(), request.getRequestURI());
+        // Async request, e.g. a streamed export, is dispatched again to complete it.
+        // It is already in flight and timed since the first dispatch
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Request: '{} {}'", request.getMethod(), request.getRequestURI());
+        }
+
+        // Templated path keeps one series per endpoint instead of one per id
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        Route route = new Route(request.getMethod(), pattern == null ? UNKNOWN_URI : pattern.toString());
+
+        inFlight.computeIfAbsent(route, this::registerInFlight).incrementAndGet();
+        request.setAttribute(ROUTE_ATTRIBUTE, route);
+        request.setAttribute(SAMPLE_ATTRIBUTE, Timer.start(meterRegistry));
         return true;
     }
+
+    // Only the async dispatch completes the request, so it is recorded there
+    @Override
+    public void afterConcurrentHandlingStarted(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            Object handler) {
+
+        if (log.isDebugEnabled()) {
+            log.debug("Request continues asynchronously: '{} {}'", request.getMethod(), request.getRequestURI());
+        }
+    }
+
+    @Override
+    public void afterCompletion(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            Object handler,
+            Exception ex) {
+
+        Route route = (Route) request.getAttribute(ROUTE_ATTRIBUTE);
+        Timer.Sample sample = (Timer.Sample) request.getAttribute(SAMPLE_ATTRIBUTE);
+        if (route == null || sample == null) {
+            return;
+        }
+
+        inFlight.get(route).decrementAndGet();
+
+        // Exception handled by ErrorHandler is seen only as the response status
+        int status = ex != null && response.getStatus() < 400 ? 500 : response.getStatus();
+        Outcome outcome = new Outcome(route, status,
+                ex == null ? "none" : ex.getClass().getSimpleName());
+
+        sample.stop(timers.computeIfAbsent(outcome, this::registerTimer));
+        if (status >= 400) {
+            errors.computeIfAbsent(outcome, this::registerErrors).increment();
+        }
+    }
+
+    private AtomicInteger registerInFlight(Route route) {
+        return meterRegistry.gauge(IN_FLIGHT,
+                Tags.of("method", route.getMethod(), "uri", route.getUri()),
+                new AtomicInteger());
+    }
+
+    private Timer registerTimer(Outcome outcome) {
+        return Timer.builder(REQUESTS)
+                .description("Latency of handled requests")
+                .tags(outcome.tags())
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private Counter registerErrors(Outcome outcome) {
+        return Counter.builder(ERRORS)
+                .description("Requests completed with 4xx or 5xx status")
+                .tags(outcome.tags())
+                .register(meterRegistry);
+    }
+
+    @Value
+    private static class Route {
+        String method;
+        String uri;
+    }
+
+    @Value
+    private static class Outcome {
+        Route route;
+        int status;
+        String exception;
+
+        Tags tags() {
+            String outcome = status >= 500 ? "SERVER_ERROR" : status >= 400 ? "CLIENT_ERROR" : "SUCCESS";
+
+            return Tags.of(
+                    "method", route.getMethod(),
+                    "uri", route.getUri(),
+                    "status", String.valueOf(status),
+                    "outcome", outcome,
+                    "exception", exception);
+        }
+    }
 }
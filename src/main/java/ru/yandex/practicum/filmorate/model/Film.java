@@ -6,6 +6,7 @@ import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.experimental.Accessors;
+import ru.yandex.practicum.filmorate.model.collection.LongSortedSet;
 import ru.yandex.practicum.filmorate.model.dictionary.Genre;
 import ru.yandex.practicum.filmorate.model.dictionary.Mpa;
 import ru.yandex.practicum.filmorate.validator.ReleaseDateValid;
@@ -14,6 +15,7 @@ import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.Positive;
 import javax.validation.constraints.Size;
 import java.time.LocalDate;
+import java.util.Collections;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -38,12 +40,29 @@ public class Film {
     private long duration;
 
     private Integer rate;
-    private Set<Long> likeFromUserId = new TreeSet<>();
+    // Volatile, as in-memory storage replaces the whole set on change
+    private volatile LongSortedSet likeFromUserId = new LongSortedSet();
     private Set<Genre> genres = new TreeSet<>();
 
     @NotNull
     private Mpa mpa;
 
+    // Deep copy, so cached films may be handed out and changed by callers
+    public Film copy() {
+        Film film = new Film()
+                .setId(id)
+                .setName(name)
+                .setDescription(description)
+                .setReleaseDate(releaseDate)
+                .setDuration(duration)
+                .setRate(rate)
+                .setLikeFromUserId(new LongSortedSet(likeFromUserId))
+                .setMpa(mpa == null ? null : mpa.copy());
+        genres.forEach(genre -> film.addGenre(genre.copy()));
+
+        return film;
+    }
+
     public void addLikeFromUserId(Long id) {
         this.likeFromUserId.add(id);
     }
@@ -56,11 +75,17 @@ public class Film {
         this.genres.add(genre);
     }
 
+    public Film setGenres(Set<Genre> genres) {
+        this.genres = genres == null ? new TreeSet<>() : new TreeSet<>(genres);
+        return this;
+    }
+
+    // Read-only views, changes go through add/remove methods
     public Set<Genre> getGenres() {
-        return new TreeSet<>(genres);
+        return Collections.unmodifiableSet(genres);
     }
 
     public Set<Long> getLikeFromUserId() {
-        return new TreeSet<>(likeFromUserId);
+        return Collections.unmodifiableSet(likeFromUserId);
     }
 }
@@ -6,12 +6,12 @@ import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.experimental.Accessors;
+import ru.yandex.practicum.filmorate.model.collection.LongSortedSet;
 
 import javax.validation.constraints.*;
 import java.time.LocalDate;
-import java.util.Comparator;
+import java.util.Collections;
 import java.util.Set;
-import java.util.TreeSet;
 
 @Getter
 @Setter
@@ -34,7 +34,19 @@ public class User {
     @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd")
     private LocalDate birthday;
 
-    private final Set<Long> friends = new TreeSet<>(Comparator.comparingLong(Long::longValue));
+    // Volatile, as in-memory storage replaces the whole set on change
+    private volatile LongSortedSet friends = new LongSortedSet();
+
+    // Deep copy, so cached users may be handed out and changed by callers
+    public User copy() {
+        return new User()
+                .setId(id)
+                .setEmail(email)
+                .setLogin(login)
+                .setName(name)
+                .setBirthday(birthday)
+                .setFriends(new LongSortedSet(friends));
+    }
 
     public void addFriend(Long id) {
         this.friends.add(id);
@@ -43,4 +55,8 @@ public class User {
     public void removeFriend(Long id) {
         this.friends.remove(id);
     }
+
+    public Set<Long> getFriends() {
+        return Collections.unmodifiableSet(friends);
+    }
 }
@@ -0,0 +1,156 @@
+package ru.yandex.practicum.filmorate.model.collection;
+
+import java.util.*;
+
+// Sorted set of ids stored in one long[], about 8 bytes per id instead of a TreeSet node with boxed Long
+public class LongSortedSet extends AbstractSet<Long> {
+    private static final long[] EMPTY = new long[0];
+
+    private long[] values = EMPTY;
+    private int size;
+
+    public LongSortedSet() {
+    }
+
+    public LongSortedSet(Collection<Long> ids) {
+        // Copy of another set takes its array as is
+        if (ids instanceof LongSortedSet) {
+            LongSortedSet set = (LongSortedSet) ids;
+            values = set.size == 0 ? EMPTY : Arrays.copyOf(set.values, set.size);
+            size = set.size;
+            return;
+        }
+
+        ids.forEach(this::add);
+    }
+
+    @Override
+    public boolean add(Long value) {
+        return add(value.longValue());
+    }
+
+    public boolean add(long value) {
+        // Ids mostly come in ascending order from ORDER BY queries
+        if (size == 0 || values[size - 1] < value) {
+            insert(size, value);
+            return true;
+        }
+
+        int index = Arrays.binarySearch(values, 0, size, value);
+        if (index >= 0) {
+            return false;
+        }
+
+        insert(-index - 1, value);
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object value) {
+        if (!(value instanceof Long)) {
+            return false;
+        }
+
+        int index = Arrays.binarySearch(values, 0, size, (Long) value);
+        if (index < 0) {
+            return false;
+        }
+
+        removeAt(index);
+        return true;
+    }
+
+    @Override
+    public boolean contains(Object value) {
+        return value instanceof Long && contains(((Long) value).longValue());
+    }
+
+    public boolean contains(long value) {
+        return Arrays.binarySearch(values, 0, size, value) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        values = EMPTY;
+        size = 0;
+    }
+
+    public long[] toLongArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    @Override
+    public Iterator<Long> iterator() {
+        return new Iterator<>() {
+            private int next;
+            private int last = -1;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Long next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+
+                last = next++;
+                return values[last];
+            }
+
+            @Override
+            public void remove() {
+                if (last < 0) {
+                    throw new IllegalStateException();
+                }
+
+                removeAt(last);
+                next = last;
+                last = -1;
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (object instanceof LongSortedSet) {
+            LongSortedSet other = (LongSortedSet) object;
+            return Arrays.equals(values, 0, size, other.values, 0, other.size);
+        }
+
+        return super.equals(object);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+
+        for (int i = 0; i < size; i++) {
+            hash += Long.hashCode(values[i]);
+        }
+
+        return hash;
+    }
+
+    private void insert(int index, long value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, Math.max(4, size + (size >> 1)));
+        }
+
+        System.arraycopy(values, index, values, index + 1, size - index);
+        values[index] = value;
+        size++;
+    }
+
+    private void removeAt(int index) {
+        System.arraycopy(values, index + 1, values, index, size - index - 1);
+        size--;
+    }
+}
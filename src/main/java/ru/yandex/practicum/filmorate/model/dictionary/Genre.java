@@ -14,6 +14,12 @@ public class Genre implements Comparable<Genre> {
     private Integer id;
     private String name;
 
+    public Genre copy() {
+        return new Genre()
+                .setId(id)
+                .setName(name);
+    }
+
     @Override
     public int compareTo(Genre genre) {
         return this.id - genre.id;
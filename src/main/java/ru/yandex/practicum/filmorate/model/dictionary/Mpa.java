@@ -13,4 +13,10 @@ public class Mpa {
 
     private Integer id;
     private String name;
+
+    public Mpa copy() {
+        return new Mpa()
+                .setId(id)
+                .setName(name);
+    }
 }
@@ -1,44 +1,101 @@
 package ru.yandex.practicum.filmorate.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.dao.Dictionary;
+import ru.yandex.practicum.filmorate.exception.EntityNotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.dictionary.Genre;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
-import java.util.List;
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 @Service
+@Slf4j
 public class FilmService {
     private final FilmStorage filmStorage;
     private final UserStorage userStorage;
+    private final FilmSearchIndex searchIndex;
+    // Hits are cached without rates, so likes don't invalidate searches
+    private final Cache<SearchKey, List<FilmSearchIndex.Hit>> searchCache;
+    // Changed on every invalidation, so a search racing with a film write doesn't stay cached
+    private final AtomicLong searchVersion = new AtomicLong();
 
     @Autowired
-    public FilmService(@Qualifier("filmDbStorage") FilmStorage filmStorage,
-                       @Qualifier("userDbStorage") UserStorage userStorage) {
+    public FilmService(@Qualifier("cachingFilmStorage") FilmStorage filmStorage,
+                       @Qualifier("cachingUserStorage") UserStorage userStorage,
+                       @Qualifier("cachedGenreDictionary") Dictionary<Genre> genreDictionary,
+                       MeterRegistry meterRegistry,
+                       @Value("${filmorate.search.cache.max-size:10000}") long searchCacheSize) {
         this.filmStorage = filmStorage;
         this.userStorage = userStorage;
+        // Films from requests have only genre ids
+        this.searchIndex = new FilmSearchIndex(genre -> Optional.ofNullable(genre.getName())
+                .orElseGet(() -> genreDictionary.getById(genre.getId()).getName()));
+        this.searchCache = Caffeine.newBuilder()
+                .maximumSize(searchCacheSize)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, searchCache, "filmSearch");
+
+        // Rate is taken from storage, as likes may be rejected or written later by the buffer
+        filmStorage.addRateListener(rateDeltas -> rateDeltas.forEach(searchIndex::adjustRate));
+    }
+
+    @PostConstruct
+    public void loadSearchIndex() {
+        searchIndex.clear();
+        filmStorage.exportAll(searchIndex::put);
+
+        log.info("Search index loaded: {} films", searchIndex.size());
     }
 
     public List<Film> findAll() {
         return filmStorage.findAll();
     }
 
+    public List<Film> findAll(Long cursor, Integer size) {
+        if (size <= 0) {
+            throw new ValidationException(String.format("Incorrect page size %s", size));
+        }
+
+        return filmStorage.findAll(cursor, size);
+    }
+
     public Film create(Film film) {
         // Set default rate
         film.setRate(0);
 
-        return filmStorage.create(film);
+        Film createdFilm = filmStorage.create(film);
+        searchIndex.put(createdFilm);
+        invalidateSearches(createdFilm.getId());
+
+        return createdFilm;
     }
 
     public Film update(Film film) {
         // Check that such film exist
-        Film returnedFilm = getFilmById(film.getId());
-        // Set current rate
-        film.setRate(returnedFilm.getRate());
+        checkFilmExists(film.getId());
 
-        return filmStorage.update(film);
+        Film updatedFilm = filmStorage.update(film);
+        searchIndex.put(updatedFilm);
+        invalidateSearches(updatedFilm.getId());
+
+        return updatedFilm;
     }
 
     public Film getFilmById(Long filmId) {
@@ -46,44 +103,126 @@ public class FilmService {
     }
 
     public void addLike(Long filmId, Long userId) {
-        // Check that such film and user exist
-        userStorage.getById(userId);
-        Film film = getFilmById(filmId);
-
-        // Add new like
-        filmStorage.addLike(film, userId);
+        // Check that such film and user exist, without loading them
+        checkUserExists(userId);
+        checkFilmExists(filmId);
 
-        // Add new rate if like was added
-        film.setRate(film.getRate() + 1);
-        filmStorage.updateRate(film);
+        // Add new like, rate is increased in the same transaction
+        filmStorage.addLike(new Film().setId(filmId), userId);
     }
 
     public void deleteLike(Long filmId, Long userId) {
-        // Check that such film and user exist
-        userStorage.getById(userId);
-        Film film = getFilmById(filmId);
+        // Check that such film and user exist, without loading them
+        checkUserExists(userId);
+        checkFilmExists(filmId);
 
-        // remove like
-        filmStorage.deleteLike(film, userId);
+        // Remove like, rate is decreased in the same transaction
+        filmStorage.deleteLike(new Film().setId(filmId), userId);
+    }
 
-        // Remove rate if like was removed
-        film.setRate(film.getRate() - 1);
-        filmStorage.updateRate(film);
+    public void exportAll(Consumer<Film> consumer) {
+        filmStorage.exportAll(consumer);
     }
 
     public List<Film> showMostPopularFilms(Integer count) {
+        if (count <= 0) {
+            throw new ValidationException(String.format("Incorrect films count %s", count));
+        }
+
         return filmStorage.showMostPopularFilms(count);
     }
 
-    public List<Film> searchFilms(String filter, String by) {
+    public List<Film> searchFilms(String filter, String by, Integer limit) {
         if (filter.isBlank()) {
             throw new IllegalArgumentException("search string could not be blank");
         }
 
-        if ("title".equals(by)) {
-            return filmStorage.searchFilmByTitle(filter);
-        } else {
-            throw new IllegalArgumentException("incorrect filter type");
+        if (limit <= 0) {
+            throw new ValidationException(String.format("Incorrect search limit %s", limit));
+        }
+
+        return findIndexedFilms(filter, parseSearchFields(by), limit);
+    }
+
+    // Fields are listed through comma, e.g. "title,description,genre"
+    private Set<FilmSearchIndex.Field> parseSearchFields(String by) {
+        Set<FilmSearchIndex.Field> fields = EnumSet.noneOf(FilmSearchIndex.Field.class);
+
+        for (String field : by.split(",")) {
+            try {
+                fields.add(FilmSearchIndex.Field.valueOf(field.trim().toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("incorrect filter type");
+            }
+        }
+
+        return fields;
+    }
+
+    private List<Film> findIndexedFilms(String filter, Set<FilmSearchIndex.Field> fields, int limit) {
+        SearchKey key = new SearchKey(FilmSearchIndex.normalize(filter), fields, limit);
+
+        while (true) {
+            List<Long> filmIds = findIndexedIds(key);
+            List<Film> films = filmStorage.findByIds(filmIds);
+
+            if (films.size() == filmIds.size()) {
+                return films;
+            }
+
+            // Film was removed from storage bypassing the service
+            Set<Long> foundIds = new HashSet<>();
+            films.forEach(film -> foundIds.add(film.getId()));
+            filmIds.stream()
+                    .filter(filmId -> !foundIds.contains(filmId))
+                    .forEach(searchIndex::remove);
+            searchVersion.incrementAndGet();
+            searchCache.invalidate(key);
+        }
+    }
+
+    private List<Long> findIndexedIds(SearchKey key) {
+        List<FilmSearchIndex.Hit> hits = searchCache.getIfPresent(key);
+
+        if (hits == null) {
+            long version = searchVersion.get();
+            hits = List.copyOf(searchIndex.searchHits(key.getQuery(), key.getFields(), key.getLimit()));
+            searchCache.put(key, hits);
+
+            // Result may be computed before a concurrent write, which couldn't see it in the cache
+            if (version != searchVersion.get()) {
+                searchCache.invalidate(key);
+            }
         }
+
+        // Cached hits are ordered by the current rates
+        return searchIndex.rank(hits, key.getLimit());
+    }
+
+    private void checkFilmExists(Long filmId) {
+        if (!filmStorage.exists(filmId)) {
+            throw new EntityNotFoundException(String.format("Film with ID %s does not exist", filmId));
+        }
+    }
+
+    private void checkUserExists(Long userId) {
+        if (!userStorage.exists(userId)) {
+            throw new EntityNotFoundException(String.format("User with ID %s does not exist", userId));
+        }
+    }
+
+    // Only searches found the film before or matching its indexed texts now can change, the rest stay cached
+    private void invalidateSearches(Long filmId) {
+        searchVersion.incrementAndGet();
+        searchCache.asMap().entrySet().removeIf(search ->
+                search.getValue().stream().anyMatch(hit -> hit.getFilmId() == filmId)
+                        || searchIndex.matches(filmId, search.getKey().getQuery(), search.getKey().getFields()));
+    }
+
+    @lombok.Value
+    private static class SearchKey {
+        String query;
+        Set<FilmSearchIndex.Field> fields;
+        int limit;
     }
 }
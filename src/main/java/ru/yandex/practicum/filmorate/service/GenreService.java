@@ -1,11 +1,13 @@
 package ru.yandex.practicum.filmorate.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.dao.Dictionary;
 import ru.yandex.practicum.filmorate.model.dictionary.Genre;
 
 import java.util.List;
+import java.util.stream.Collectors;
 
 @Service
 public class GenreService {
@@ -13,15 +15,18 @@ public class GenreService {
     private final Dictionary<Genre> dictionary;
 
     @Autowired
-    public GenreService(Dictionary<Genre> dictionary) {
+    public GenreService(@Qualifier("cachedGenreDictionary") Dictionary<Genre> dictionary) {
         this.dictionary = dictionary;
     }
 
+    // Dictionary values are shared by storage, copies are handed out
     public List<Genre> findAll() {
-        return dictionary.findAll();
+        return dictionary.findAll().stream()
+                .map(Genre::copy)
+                .collect(Collectors.toList());
     }
 
     public Genre getGenreById(Integer genreId) {
-        return dictionary.getById(genreId);
+        return dictionary.getById(genreId).copy();
     }
 }
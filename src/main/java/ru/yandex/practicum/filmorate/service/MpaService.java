@@ -1,26 +1,31 @@
 package ru.yandex.practicum.filmorate.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.dao.Dictionary;
 import ru.yandex.practicum.filmorate.model.dictionary.Mpa;
 
 import java.util.List;
+import java.util.stream.Collectors;
 
 @Service
 public class MpaService {
     private final Dictionary<Mpa> dictionary;
 
     @Autowired
-    public MpaService(Dictionary<Mpa> dictionary) {
+    public MpaService(@Qualifier("cachedMpaDictionary") Dictionary<Mpa> dictionary) {
         this.dictionary = dictionary;
     }
 
+    // Dictionary values are shared by storage, copies are handed out
     public List<Mpa> findAll() {
-        return dictionary.findAll();
+        return dictionary.findAll().stream()
+                .map(Mpa::copy)
+                .collect(Collectors.toList());
     }
 
     public Mpa getMpaById(Integer mpaId) {
-        return dictionary.getById(mpaId);
+        return dictionary.getById(mpaId).copy();
     }
 }
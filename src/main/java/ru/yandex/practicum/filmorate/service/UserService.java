@@ -4,6 +4,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.exception.EntityNotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
@@ -15,12 +17,20 @@ public class UserService {
     private final UserStorage userStorage;
 
     @Autowired
-    public UserService(@Qualifier("userDbStorage") UserStorage userStorage) {
+    public UserService(@Qualifier("cachingUserStorage") UserStorage userStorage) {
         this.userStorage = userStorage;
     }
 
-    public List<User> findAll() {
-        return userStorage.findAll();
+    public List<User> findAll(boolean withFriends) {
+        return userStorage.findAll(withFriends);
+    }
+
+    public List<User> findAll(Long cursor, Integer size, boolean withFriends) {
+        if (size <= 0) {
+            throw new ValidationException(String.format("Incorrect page size %s", size));
+        }
+
+        return userStorage.findAll(cursor, size, withFriends);
     }
 
     public User create(User user) {
@@ -29,7 +39,7 @@ public class UserService {
     }
 
     public User update(User user) {
-        getUserById(user.getId());
+        checkUserExists(user.getId());
         changeEmptyName(user);
 
         return userStorage.update(user);
@@ -40,30 +50,41 @@ public class UserService {
     }
 
     public void addFriend(Long userId, Long friendsId) {
-        User user = getUserById(userId);
-        User friend = getUserById(friendsId);
+        checkUserExists(userId);
+        checkUserExists(friendsId);
 
-        userStorage.addFriend(user, friend);
+        userStorage.addFriend(reference(userId), reference(friendsId));
     }
 
     public void deleteFriend(Long userId, Long friendsId) {
-        User user = getUserById(userId);
-        User friend = getUserById(friendsId);
+        checkUserExists(userId);
+        checkUserExists(friendsId);
 
-        userStorage.deleteFriend(user, friend);
+        userStorage.deleteFriend(reference(userId), reference(friendsId));
     }
 
-    public List<User> showFriends(Long userId) {
-        User user = getUserById(userId);
+    public List<User> showFriends(Long userId, boolean withFriends) {
+        checkUserExists(userId);
 
-        return userStorage.showFriends(user);
+        return userStorage.showFriends(reference(userId), withFriends);
     }
 
-    public List<User> showCommonFriends(Long userId, Long friendsId) {
-        User user = getUserById(userId);
-        User friend = getUserById(friendsId);
+    public List<User> showCommonFriends(Long userId, Long friendsId, boolean withFriends) {
+        checkUserExists(userId);
+        checkUserExists(friendsId);
 
-        return userStorage.showCommonFriends(user, friend);
+        return userStorage.showCommonFriends(reference(userId), reference(friendsId), withFriends);
+    }
+
+    // Only id of the user is needed by storage, so it isn't loaded
+    private User reference(Long userId) {
+        return new User().setId(userId);
+    }
+
+    private void checkUserExists(Long userId) {
+        if (!userStorage.exists(userId)) {
+            throw new EntityNotFoundException(String.format("User with ID %s does not exist", userId));
+        }
     }
 
     private void changeEmptyName(User user) {
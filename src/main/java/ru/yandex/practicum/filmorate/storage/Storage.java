@@ -10,4 +10,7 @@ public interface Storage<T> {
     T update(T object);
 
     T getById(Long id);
+
+    // Primary key probe, the entity itself isn't loaded
+    boolean exists(Long id);
 }
@@ -0,0 +1,32 @@
+package ru.yandex.practicum.filmorate.storage;
+
+// Fixed set of monitors shared by entity ids, so concurrent changes of one entity are serialized
+public class StripedLocks {
+    private final Object[] locks;
+
+    public StripedLocks(int stripes) {
+        locks = new Object[stripes];
+
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    public Object lockFor(long id) {
+        return locks[stripe(id)];
+    }
+
+    // Monitors of two ids in a stable order, to take them without deadlock
+    public Object[] lockPairFor(long firstId, long secondId) {
+        int first = stripe(firstId);
+        int second = stripe(secondId);
+
+        return first <= second
+                ? new Object[]{locks[first], locks[second]}
+                : new Object[]{locks[second], locks[first]};
+    }
+
+    private int stripe(long id) {
+        return (int) Math.floorMod(id, (long) locks.length);
+    }
+}
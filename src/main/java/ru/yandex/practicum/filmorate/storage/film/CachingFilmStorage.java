@@ -0,0 +1,130 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+// Caches films by id, every write through this storage drops the changed films.
+// Cached films are never handed out, callers get copies
+public class CachingFilmStorage implements FilmStorage {
+    private final FilmStorage filmStorage;
+    private final Cache<Long, Film> films;
+    // Changed on every invalidation, so films loaded before a concurrent write don't stay cached
+    private final AtomicLong version = new AtomicLong();
+
+    public CachingFilmStorage(FilmStorage filmStorage, Cache<Long, Film> films) {
+        this.filmStorage = filmStorage;
+        this.films = films;
+    }
+
+    // For changes made bypassing this storage, e.g. buffered likes
+    public void invalidate(Collection<Long> filmIds) {
+        version.incrementAndGet();
+        films.invalidateAll(filmIds);
+    }
+
+    @Override
+    public List<Film> findAll() {
+        return filmStorage.findAll();
+    }
+
+    @Override
+    public List<Film> findAll(Long cursor, Integer size) {
+        return filmStorage.findAll(cursor, size);
+    }
+
+    @Override
+    public Film create(Film film) {
+        return filmStorage.create(film);
+    }
+
+    @Override
+    public Film update(Film film) {
+        try {
+            return filmStorage.update(film);
+        } finally {
+            invalidate(film.getId());
+        }
+    }
+
+    @Override
+    public Film getById(Long id) {
+        return films.get(id, filmStorage::getById).copy();
+    }
+
+    @Override
+    public boolean exists(Long id) {
+        return films.getIfPresent(id) != null || filmStorage.exists(id);
+    }
+
+    @Override
+    public void addLike(Film film, Long userId) {
+        try {
+            filmStorage.addLike(film, userId);
+        } finally {
+            invalidate(film.getId());
+        }
+    }
+
+    @Override
+    public void deleteLike(Film film, Long userId) {
+        try {
+            filmStorage.deleteLike(film, userId);
+        } finally {
+            invalidate(film.getId());
+        }
+    }
+
+    @Override
+    public List<Film> showMostPopularFilms(Integer count) {
+        return filmStorage.showMostPopularFilms(count);
+    }
+
+    @Override
+    public List<Film> findByIds(List<Long> ids) {
+        Map<Long, Film> found = new HashMap<>(films.getAllPresent(ids));
+        List<Long> missingIds = ids.stream()
+                .filter(id -> !found.containsKey(id))
+                .distinct()
+                .collect(Collectors.toList());
+
+        if (!missingIds.isEmpty()) {
+            long loadVersion = version.get();
+            Map<Long, Film> loaded = new HashMap<>();
+            filmStorage.findByIds(missingIds).forEach(film -> loaded.put(film.getId(), film));
+            films.putAll(loaded);
+
+            // Films may be read before a concurrent write, which couldn't see them in the cache
+            if (loadVersion != version.get()) {
+                films.invalidateAll(loaded.keySet());
+            }
+            found.putAll(loaded);
+        }
+
+        List<Film> result = new ArrayList<>(found.size());
+        for (Long id : ids) {
+            Optional.ofNullable(found.get(id)).ifPresent(film -> result.add(film.copy()));
+        }
+
+        return result;
+    }
+
+    @Override
+    public void exportAll(Consumer<Film> consumer) {
+        filmStorage.exportAll(consumer);
+    }
+
+    @Override
+    public void addRateListener(Consumer<Map<Long, Integer>> listener) {
+        filmStorage.addRateListener(listener);
+    }
+
+    private void invalidate(Long filmId) {
+        version.incrementAndGet();
+        films.invalidate(filmId);
+    }
+}
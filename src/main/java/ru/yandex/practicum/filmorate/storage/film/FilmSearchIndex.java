@@ -0,0 +1,294 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.collection.LongSortedSet;
+import ru.yandex.practicum.filmorate.model.dictionary.Genre;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Trigram index for substring search, the same matching as LIKE '%query%' but without table scan
+public class FilmSearchIndex {
+    private static final int GRAM = 3;
+
+    // Relevance of a match is multiplied by weight of the field
+    @Getter
+    @RequiredArgsConstructor
+    public enum Field {
+        TITLE(3),
+        GENRE(2),
+        DESCRIPTION(1);
+
+        private final int weight;
+    }
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Map<Field, String>> documents = new HashMap<>();
+    private final Map<Field, Map<String, LongSortedSet>> postings = new EnumMap<>(Field.class);
+    // Rate changes often, so it is kept apart from the texts and doesn't take the lock
+    private final ConcurrentMap<Long, Integer> rates = new ConcurrentHashMap<>();
+    private final Function<Genre, String> genreName;
+
+    public FilmSearchIndex() {
+        this(Genre::getName);
+    }
+
+    // Films from requests have only genre ids, so names may come from a dictionary
+    public FilmSearchIndex(Function<Genre, String> genreName) {
+        this.genreName = genreName;
+
+        for (Field field : Field.values()) {
+            postings.put(field, new HashMap<>());
+        }
+    }
+
+    public void put(Film film) {
+        Map<Field, String> document = new EnumMap<>(Field.class);
+        document.put(Field.TITLE, normalize(film.getName()));
+        document.put(Field.DESCRIPTION, normalize(film.getDescription()));
+        // Each genre name is a separate line, so a match can't span two names
+        document.put(Field.GENRE, normalize(film.getGenres().stream()
+                .map(genreName)
+                .filter(Objects::nonNull)
+                .collect(Collectors.joining("\n"))));
+
+        lock.writeLock().lock();
+        try {
+            removeDocument(film.getId());
+            documents.put(film.getId(), document);
+            document.forEach((field, text) -> grams(text).forEach(gram ->
+                    postings.get(field).computeIfAbsent(gram, key -> new LongSortedSet()).add(film.getId())));
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        // Rate of an indexed film is changed only by adjustRate, a film read before a like doesn't undo it
+        rates.putIfAbsent(film.getId(), Optional.ofNullable(film.getRate()).orElse(0));
+    }
+
+    public void adjustRate(Long filmId, int delta) {
+        rates.computeIfPresent(filmId, (id, rate) -> rate + delta);
+    }
+
+    public void remove(Long filmId) {
+        lock.writeLock().lock();
+        try {
+            removeDocument(filmId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        rates.remove(filmId);
+    }
+
+    // Film ids ordered by weighted relevance over the fields, then by rate
+    public List<Long> search(String query, Set<Field> fields, int limit) {
+        return rank(searchHits(query, fields, limit), limit);
+    }
+
+    // Every film that can be among the best by relevance, whatever the rates are:
+    // matches scored at least as the limit-th best score, so rates may be applied later by rank
+    public List<Hit> searchHits(String query, Set<Field> fields, int limit) {
+        String normalized = normalize(query);
+        Map<Long, Integer> scores = new HashMap<>();
+
+        lock.readLock().lock();
+        try {
+            for (Field field : fields) {
+                for (long filmId : candidates(field, normalized)) {
+                    int relevance = relevance(documents.get(filmId).get(field), normalized);
+                    if (relevance > 0) {
+                        scores.merge(filmId, relevance * field.getWeight(), Integer::sum);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // Heap keeps only the best scores, its head is the worst of them
+        PriorityQueue<Integer> topScores = new PriorityQueue<>(Math.max(1, Math.min(limit, scores.size())));
+        for (int score : scores.values()) {
+            topScores.offer(score);
+            if (topScores.size() > limit) {
+                topScores.poll();
+            }
+        }
+        int minScore = topScores.isEmpty() ? Integer.MAX_VALUE : topScores.peek();
+
+        List<Hit> hits = new ArrayList<>();
+        scores.forEach((filmId, score) -> {
+            if (score >= minScore) {
+                hits.add(new Hit(filmId, score));
+            }
+        });
+
+        return hits;
+    }
+
+    // Hits ordered by relevance, then by current rate
+    public List<Long> rank(Collection<Hit> hits, int limit) {
+        // Heap keeps only the best matches, its head is the worst of them
+        PriorityQueue<Match> top = new PriorityQueue<>(Math.max(1, Math.min(limit, hits.size())),
+                Comparator.reverseOrder());
+        for (Hit hit : hits) {
+            top.offer(new Match(hit.getFilmId(), hit.getScore(), rates.getOrDefault(hit.getFilmId(), 0)));
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+
+        List<Long> filmIds = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            filmIds.add(top.poll().filmId);
+        }
+        Collections.reverse(filmIds);
+
+        return filmIds;
+    }
+
+    // Whether indexed texts of the film match the query, regardless of other films
+    public boolean matches(Long filmId, String query, Set<Field> fields) {
+        String normalized = normalize(query);
+
+        lock.readLock().lock();
+        try {
+            Map<Field, String> document = documents.get(filmId);
+
+            return document != null && fields.stream()
+                    .anyMatch(field -> relevance(document.get(field), normalized) > 0);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            documents.clear();
+            postings.values().forEach(Map::clear);
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        rates.clear();
+    }
+
+    private long[] candidates(Field field, String query) {
+        // Too short query has no trigram, such texts are checked one by one
+        if (query.length() < GRAM) {
+            return documents.keySet().stream().mapToLong(Long::longValue).toArray();
+        }
+
+        List<LongSortedSet> lists = new ArrayList<>();
+        for (String gram : grams(query)) {
+            LongSortedSet ids = postings.get(field).get(gram);
+            if (ids == null) {
+                return new long[0];
+            }
+            lists.add(ids);
+        }
+        lists.sort(Comparator.comparingInt(LongSortedSet::size));
+
+        // The shortest list is filtered by the others
+        long[] smallest = lists.get(0).toLongArray();
+        int count = 0;
+        for (long filmId : smallest) {
+            boolean inAll = true;
+            for (int i = 1; i < lists.size() && inAll; i++) {
+                inAll = lists.get(i).contains(filmId);
+            }
+            if (inAll) {
+                smallest[count++] = filmId;
+            }
+        }
+
+        return Arrays.copyOf(smallest, count);
+    }
+
+    private void removeDocument(Long filmId) {
+        Map<Field, String> document = documents.remove(filmId);
+        if (document == null) {
+            return;
+        }
+
+        document.forEach((field, text) -> grams(text).forEach(gram -> {
+            Map<String, LongSortedSet> fieldPostings = postings.get(field);
+            LongSortedSet ids = fieldPostings.get(gram);
+            ids.remove(filmId);
+            if (ids.isEmpty()) {
+                fieldPostings.remove(gram);
+            }
+        }));
+    }
+
+    private static int relevance(String text, String query) {
+        if (text.equals(query) || text.startsWith(query + "\n")
+                || text.endsWith("\n" + query) || text.contains("\n" + query + "\n")) {
+            return 4;
+        } else if (text.startsWith(query)) {
+            return 3;
+        } else if (text.contains(" " + query) || text.contains("\n" + query)) {
+            return 2;
+        } else if (text.contains(query)) {
+            return 1;
+        }
+
+        return 0;
+    }
+
+    private static Set<String> grams(String text) {
+        Set<String> grams = new HashSet<>();
+
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM));
+        }
+
+        return grams;
+    }
+
+    @Value
+    public static class Hit {
+        long filmId;
+        int score;
+    }
+
+    @RequiredArgsConstructor
+    private static class Match implements Comparable<Match> {
+        private final long filmId;
+        private final int score;
+        private final int rate;
+
+        @Override
+        public int compareTo(Match match) {
+            int byScore = Integer.compare(match.score, this.score);
+            if (byScore != 0) {
+                return byScore;
+            }
+
+            int byRate = Integer.compare(match.rate, this.rate);
+            return byRate != 0 ? byRate : Long.compare(match.filmId, this.filmId);
+        }
+    }
+}
@@ -4,16 +4,23 @@ import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.storage.Storage;
 
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public interface FilmStorage extends Storage<Film> {
 
+    List<Film> findAll(Long cursor, Integer size);
+
     void addLike(Film film, Long userId);
 
     void deleteLike(Film film, Long userId);
 
     List<Film> showMostPopularFilms(Integer count);
 
-    void updateRate(Film film);
+    List<Film> findByIds(List<Long> ids);
+
+    void exportAll(Consumer<Film> consumer);
 
-    List<Film> searchFilmByTitle(String filter);
+    // Listener receives rate delta by filmId after likes are stored, rejected likes aren't passed
+    void addRateListener(Consumer<Map<Long, Integer>> listener);
 }
@@ -5,15 +5,26 @@ import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.EntityNotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.collection.LongSortedSet;
+import ru.yandex.practicum.filmorate.storage.StripedLocks;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Component
 @Slf4j
 public class InMemoryFilmStorage implements FilmStorage {
-    private Long filmId = 1L;
-    private final Map<Long, Film> films = new HashMap<>();
+    private final AtomicLong filmId = new AtomicLong(1);
+    private final ConcurrentMap<Long, Film> films = new ConcurrentHashMap<>();
+    private final StripedLocks locks = new StripedLocks(64);
+    // Films are ranked by amount of likes
+    private final PopularityIndex popularityIndex = new PopularityIndex();
+    private final List<Consumer<Map<Long, Integer>>> rateListeners = new CopyOnWriteArrayList<>();
 
     @Override
     public List<Film> findAll() {
@@ -21,70 +32,130 @@ public class InMemoryFilmStorage implements FilmStorage {
         return new ArrayList<>(films.values());
     }
 
+    @Override
+    public List<Film> findAll(Long cursor, Integer size) {
+        long lastId = Optional.ofNullable(cursor).orElse(Long.MIN_VALUE);
+
+        return films.values().stream()
+                .filter(film -> film.getId() > lastId)
+                .sorted(Comparator.comparing(Film::getId))
+                .limit(size)
+                .collect(Collectors.toList());
+    }
+
     @Override
     public Film create(Film film) {
-        if (films.containsKey(film.getId())) {
+        if (film.getId() != null && films.containsKey(film.getId())) {
             throw new ValidationException(String.format("Film with id %s already exist", film.getId()));
         }
 
         film.setId(getNextId());
         films.put(film.getId(), film);
+        popularityIndex.put(film.getId(), film.getLikeFromUserId().size());
         log.info("Saved: {}", film);
         return film;
     }
 
     @Override
     public Film update(Film film) {
-        films.put(film.getId(), film);
+        synchronized (locks.lockFor(film.getId())) {
+            // Likes and rate are changed only by likes, the new film keeps the stored ones
+            Film stored = getStored(film.getId());
+            film.setLikeFromUserId(new LongSortedSet(stored.getLikeFromUserId()));
+            film.setRate(stored.getRate());
+            films.put(film.getId(), film);
+        }
         log.info("Updated: {}", film);
         return film;
     }
 
     @Override
     public Film getById(Long filmId) {
-        if (!films.containsKey(filmId)) {
+        return getStored(filmId);
+    }
+
+    // Writes take the stored film itself, not what an overriding getById returns
+    private Film getStored(Long filmId) {
+        Film film = films.get(filmId);
+        if (film == null) {
             throw new EntityNotFoundException(String.format("Film with ID %s does not exist", filmId));
         }
 
-        return films.get(filmId);
+        return film;
+    }
+
+    @Override
+    public boolean exists(Long filmId) {
+        return filmId != null && films.containsKey(filmId);
     }
 
     @Override
     public void addLike(Film film, Long userId) {
-        film.addLikeFromUserId(userId);
+        synchronized (locks.lockFor(film.getId())) {
+            // Film may be only a reference with id, likes are kept by the stored one.
+            // It's read under the lock, as update may replace it
+            Film stored = getStored(film.getId());
+            // Likes are replaced by a new set, so readers never see it half-changed
+            LongSortedSet likes = new LongSortedSet(stored.getLikeFromUserId());
+            if (!likes.add(userId)) {
+                return;
+            }
+
+            stored.setLikeFromUserId(likes);
+            stored.setRate(Optional.ofNullable(stored.getRate()).orElse(0) + 1);
+            popularityIndex.put(stored.getId(), likes.size());
+        }
+
+        rateChanged(film.getId(), 1);
     }
 
     @Override
     public void deleteLike(Film film, Long userId) {
-        film.removeLikeFromUserId(userId);
+        synchronized (locks.lockFor(film.getId())) {
+            Film stored = getStored(film.getId());
+            LongSortedSet likes = new LongSortedSet(stored.getLikeFromUserId());
+            if (!likes.remove(userId)) {
+                return;
+            }
+
+            stored.setLikeFromUserId(likes);
+            stored.setRate(Optional.ofNullable(stored.getRate()).orElse(0) - 1);
+            popularityIndex.put(stored.getId(), likes.size());
+        }
+
+        rateChanged(film.getId(), -1);
     }
 
     @Override
     public List<Film> showMostPopularFilms(Integer count) {
-        return findAll()
-                .stream()
-                .sorted((f1, f2) -> compare(f1.getLikeFromUserId().size(), f2.getLikeFromUserId().size()))
-                .limit(count)
+        return findByIds(popularityIndex.top(count));
+    }
+
+    @Override
+    public List<Film> findByIds(List<Long> ids) {
+        return ids.stream()
+                .map(films::get)
+                .filter(Objects::nonNull)
                 .collect(Collectors.toList());
     }
 
     @Override
-    public void updateRate(Film film) {
-        films.put(film.getId(), film);
-        log.info("Rate was updated: {}", film);
+    public void exportAll(Consumer<Film> consumer) {
+        films.values().forEach(consumer);
     }
 
-    private int compare(Integer f1, Integer f2) {
-        return f1.compareTo(f2) * -1;
+    @Override
+    public void addRateListener(Consumer<Map<Long, Integer>> listener) {
+        rateListeners.add(listener);
     }
 
     private Long getNextId(){
-        return filmId++;
+        return filmId.getAndIncrement();
     }
 
-    @Override
-    public List<Film> searchFilmByTitle(String query) {
-        // There is no realization
-        return null;
+    // Listeners are called outside of the film lock
+    private void rateChanged(Long filmId, int delta) {
+        Map<Long, Integer> rateDeltas = Map.of(filmId, delta);
+        rateListeners.forEach(listener -> listener.accept(rateDeltas));
     }
 }
@@ -0,0 +1,86 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+public class PopularityIndex {
+    // Film without rate is ranked below any rated one, as NULLS LAST in SQL
+    private static final long NO_RATE = Long.MIN_VALUE;
+
+    // Ordered by rate desc, then by filmId desc
+    private final ConcurrentSkipListSet<Entry> ranking = new ConcurrentSkipListSet<>();
+    private final ConcurrentMap<Long, Long> rates = new ConcurrentHashMap<>();
+
+    public void put(Long filmId, Integer rate) {
+        long newRate = rate == null ? NO_RATE : rate;
+
+        rates.compute(filmId, (id, oldRate) -> {
+            if (oldRate != null) {
+                ranking.remove(new Entry(oldRate, id));
+            }
+            ranking.add(new Entry(newRate, id));
+            return newRate;
+        });
+    }
+
+    public void adjust(Long filmId, int delta) {
+        rates.computeIfPresent(filmId, (id, oldRate) -> {
+            long newRate = (oldRate == NO_RATE ? 0 : oldRate) + delta;
+
+            ranking.remove(new Entry(oldRate, id));
+            ranking.add(new Entry(newRate, id));
+            return newRate;
+        });
+    }
+
+    public void remove(Long filmId) {
+        rates.computeIfPresent(filmId, (id, oldRate) -> {
+            ranking.remove(new Entry(oldRate, id));
+            return null;
+        });
+    }
+
+    public List<Long> top(int count) {
+        if (count <= 0) {
+            return List.of();
+        }
+
+        List<Long> filmIds = new ArrayList<>(Math.min(count, rates.size()));
+        Iterator<Entry> iterator = ranking.iterator();
+
+        while (filmIds.size() < count && iterator.hasNext()) {
+            filmIds.add(iterator.next().filmId);
+        }
+
+        return filmIds;
+    }
+
+    public int size() {
+        return rates.size();
+    }
+
+    public void clear() {
+        rates.clear();
+        ranking.clear();
+    }
+
+    @EqualsAndHashCode
+    @RequiredArgsConstructor
+    private static class Entry implements Comparable<Entry> {
+        private final long rate;
+        private final long filmId;
+
+        @Override
+        public int compareTo(Entry entry) {
+            int byRate = Long.compare(entry.rate, this.rate);
+            return byRate != 0 ? byRate : Long.compare(entry.filmId, this.filmId);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.List;
+
+// Caches users by id, every write through this storage drops the changed users.
+// Cached users are never handed out, callers get copies
+public class CachingUserStorage implements UserStorage {
+    private final UserStorage userStorage;
+    private final Cache<Long, User> users;
+
+    public CachingUserStorage(UserStorage userStorage, Cache<Long, User> users) {
+        this.userStorage = userStorage;
+        this.users = users;
+    }
+
+    @Override
+    public List<User> findAll(boolean withFriends) {
+        return userStorage.findAll(withFriends);
+    }
+
+    @Override
+    public List<User> findAll(Long cursor, Integer size, boolean withFriends) {
+        return userStorage.findAll(cursor, size, withFriends);
+    }
+
+    @Override
+    public User create(User user) {
+        return userStorage.create(user);
+    }
+
+    @Override
+    public User update(User user) {
+        try {
+            return userStorage.update(user);
+        } finally {
+            users.invalidate(user.getId());
+        }
+    }
+
+    @Override
+    public User getById(Long id) {
+        return users.get(id, userStorage::getById).copy();
+    }
+
+    @Override
+    public boolean exists(Long id) {
+        return users.getIfPresent(id) != null || userStorage.exists(id);
+    }
+
+    @Override
+    public void addFriend(User user, User friend) {
+        try {
+            userStorage.addFriend(user, friend);
+        } finally {
+            users.invalidateAll(List.of(user.getId(), friend.getId()));
+        }
+    }
+
+    @Override
+    public void deleteFriend(User user, User friend) {
+        try {
+            userStorage.deleteFriend(user, friend);
+        } finally {
+            users.invalidateAll(List.of(user.getId(), friend.getId()));
+        }
+    }
+
+    @Override
+    public List<User> showFriends(User user, boolean withFriends) {
+        return userStorage.showFriends(user, withFriends);
+    }
+
+    @Override
+    public List<User> showCommonFriends(User user, User friend, boolean withFriends) {
+        return userStorage.showCommonFriends(user, friend, withFriends);
+    }
+}
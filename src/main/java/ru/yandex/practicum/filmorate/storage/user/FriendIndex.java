@@ -0,0 +1,96 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+public class FriendIndex {
+    private static final long[] NO_FRIENDS = new long[0];
+
+    // Sorted friend ids by userId, arrays are replaced on change and never modified
+    private final ConcurrentMap<Long, long[]> friends = new ConcurrentHashMap<>();
+
+    // Friend ids have to be sorted, as they come from ORDER BY friend_id
+    public void putAll(Long userId, long[] sortedFriendIds) {
+        friends.put(userId, sortedFriendIds);
+    }
+
+    public void add(Long userId, long friendId) {
+        friends.compute(userId, (id, current) -> {
+            long[] ids = current == null ? NO_FRIENDS : current;
+            int index = Arrays.binarySearch(ids, friendId);
+            if (index >= 0) {
+                return ids;
+            }
+
+            int position = -index - 1;
+            long[] updated = new long[ids.length + 1];
+            System.arraycopy(ids, 0, updated, 0, position);
+            updated[position] = friendId;
+            System.arraycopy(ids, position, updated, position + 1, ids.length - position);
+            return updated;
+        });
+    }
+
+    public void remove(Long userId, long friendId) {
+        friends.computeIfPresent(userId, (id, ids) -> {
+            int position = Arrays.binarySearch(ids, friendId);
+            if (position < 0) {
+                return ids;
+            }
+            if (ids.length == 1) {
+                return null;
+            }
+
+            long[] updated = new long[ids.length - 1];
+            System.arraycopy(ids, 0, updated, 0, position);
+            System.arraycopy(ids, position + 1, updated, position, ids.length - position - 1);
+            return updated;
+        });
+    }
+
+    public long[] friendsOf(Long userId) {
+        return friends.getOrDefault(userId, NO_FRIENDS).clone();
+    }
+
+    public long[] commonFriends(Long userId, Long otherId) {
+        long[] first = friends.getOrDefault(userId, NO_FRIENDS);
+        long[] second = friends.getOrDefault(otherId, NO_FRIENDS);
+
+        return first.length <= second.length ? intersect(first, second) : intersect(second, first);
+    }
+
+    public int size() {
+        return friends.size();
+    }
+
+    public void clear() {
+        friends.clear();
+    }
+
+    // Every id of the smaller array is galloped for in the rest of the larger one
+    private static long[] intersect(long[] small, long[] large) {
+        long[] result = new long[small.length];
+        int count = 0;
+        int from = 0;
+
+        for (int i = 0; i < small.length && from < large.length; i++) {
+            long value = small[i];
+
+            int bound = 1;
+            while (from + bound < large.length && large[from + bound] < value) {
+                bound <<= 1;
+            }
+
+            int position = Arrays.binarySearch(large, from, Math.min(from + bound + 1, large.length), value);
+            if (position >= 0) {
+                result[count++] = value;
+                from = position + 1;
+            } else {
+                from = -position - 1;
+            }
+        }
+
+        return Arrays.copyOf(result, count);
+    }
+}
@@ -5,25 +5,45 @@ import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.EntityNotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.collection.LongSortedSet;
+import ru.yandex.practicum.filmorate.storage.StripedLocks;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 @Component
 @Slf4j
 public class InMemoryUserStorage implements UserStorage {
-    private Long userId = 1L;
-    private final Map<Long, User> users = new HashMap<>();
+    private final AtomicLong userId = new AtomicLong(1);
+    private final ConcurrentMap<Long, User> users = new ConcurrentHashMap<>();
+    private final StripedLocks locks = new StripedLocks(64);
 
     @Override
-    public List<User> findAll() {
+    public List<User> findAll(boolean withFriends) {
         log.debug("Current amount of users: {}", users.size());
-        return new ArrayList<>(users.values());
+        return users.values().stream()
+                .map(user -> withFriends(user, withFriends))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<User> findAll(Long cursor, Integer size, boolean withFriends) {
+        long lastId = Optional.ofNullable(cursor).orElse(Long.MAX_VALUE);
+
+        return users.values().stream()
+                .filter(user -> user.getId() < lastId)
+                .sorted(Comparator.comparing(User::getId).reversed())
+                .limit(size)
+                .map(user -> withFriends(user, withFriends))
+                .collect(Collectors.toList());
     }
 
     @Override
     public User create(User user) {
-        if (users.containsKey(user.getId())) {
+        if (user.getId() != null && users.containsKey(user.getId())) {
             throw new ValidationException(String.format("User with ID %s already exist", user.getId()));
         }
 
@@ -35,47 +55,83 @@ public class InMemoryUserStorage implements UserStorage {
 
     @Override
     public User update(User user) {
-        users.put(user.getId(), user);
+        synchronized (locks.lockFor(user.getId())) {
+            // Friends are changed only by friendship requests, the new user keeps the stored ones
+            user.setFriends(new LongSortedSet(getStored(user.getId()).getFriends()));
+            users.put(user.getId(), user);
+        }
         log.info("Updated: {}", user);
         return user;
     }
 
     @Override
     public User getById(Long userId) {
-        if (!users.containsKey(userId)) {
+        return getStored(userId);
+    }
+
+    // Writes take the stored user itself, not what an overriding getById returns
+    private User getStored(Long userId) {
+        User user = users.get(userId);
+        if (user == null) {
             throw new EntityNotFoundException(String.format("User with ID %s does not exist", userId));
         }
 
-        return users.get(userId);
+        return user;
+    }
+
+    @Override
+    public boolean exists(Long userId) {
+        return userId != null && users.containsKey(userId);
     }
 
     @Override
     public void addFriend(User user, User friend) {
-        user.addFriend(friend.getId());
-        friend.addFriend(user.getId());
+        Object[] pair = locks.lockPairFor(user.getId(), friend.getId());
+
+        synchronized (pair[0]) {
+            synchronized (pair[1]) {
+                // Users may be only references with ids, friends are kept by the stored ones.
+                // They're read under the locks, as update may replace them
+                User storedUser = getStored(user.getId());
+                User storedFriend = getStored(friend.getId());
+                // Friends are replaced by a new set, so readers never see it half-changed
+                storedUser.setFriends(withFriend(storedUser, storedFriend.getId()));
+                storedFriend.setFriends(withFriend(storedFriend, storedUser.getId()));
+            }
+        }
     }
 
     @Override
     public void deleteFriend(User user, User friend) {
-        user.removeFriend(friend.getId());
-        friend.removeFriend(user.getId());
+        Object[] pair = locks.lockPairFor(user.getId(), friend.getId());
+
+        synchronized (pair[0]) {
+            synchronized (pair[1]) {
+                User storedUser = getStored(user.getId());
+                User storedFriend = getStored(friend.getId());
+                storedUser.setFriends(withoutFriend(storedUser, storedFriend.getId()));
+                storedFriend.setFriends(withoutFriend(storedFriend, storedUser.getId()));
+            }
+        }
     }
 
     @Override
-    public List<User> showFriends(User user) {
-        if (user.getFriends() == null) {
+    public List<User> showFriends(User user, boolean withFriends) {
+        Set<Long> friends = getById(user.getId()).getFriends();
+        if (friends == null) {
             return new ArrayList<>();
         }
 
-        return user.getFriends().stream()
+        return friends.stream()
                 .map(this::getById)
+                .map(friend -> withFriends(friend, withFriends))
                 .collect(Collectors.toList());
     }
 
     @Override
-    public List<User> showCommonFriends(User user, User friend) {
-        Set<Long> userFriends = user.getFriends();
-        Set<Long> friendFriends = friend.getFriends();
+    public List<User> showCommonFriends(User user, User friend, boolean withFriends) {
+        Set<Long> userFriends = getById(user.getId()).getFriends();
+        Set<Long> friendFriends = getById(friend.getId()).getFriends();
 
         if (userFriends == null) {
             return new ArrayList<>();
@@ -84,10 +140,28 @@ public class InMemoryUserStorage implements UserStorage {
         return userFriends.stream()
                 .filter(friendFriends::contains)
                 .map(this::getById)
+                .map(commonFriend -> withFriends(commonFriend, withFriends))
                 .collect(Collectors.toList());
     }
 
     private Long getNextId(){
-        return userId++;
+        return userId.getAndIncrement();
+    }
+
+    // Same as in the database storage, users without friends requested come with empty friends
+    private User withFriends(User user, boolean withFriends) {
+        return withFriends ? user : user.copy().setFriends(new LongSortedSet());
+    }
+
+    private LongSortedSet withFriend(User user, Long friendId) {
+        LongSortedSet friends = new LongSortedSet(user.getFriends());
+        friends.add(friendId);
+        return friends;
+    }
+
+    private LongSortedSet withoutFriend(User user, Long friendId) {
+        LongSortedSet friends = new LongSortedSet(user.getFriends());
+        friends.remove(friendId);
+        return friends;
     }
 }
@@ -7,11 +7,21 @@ import java.util.List;
 
 public interface UserStorage extends Storage<User> {
 
+    @Override
+    default List<User> findAll() {
+        return findAll(true);
+    }
+
+    // Friend ids are set only when withFriends is set, otherwise users come with empty friends
+    List<User> findAll(boolean withFriends);
+
+    List<User> findAll(Long cursor, Integer size, boolean withFriends);
+
     void addFriend(User user, User friend);
 
     void deleteFriend(User user, User friend);
 
-    List<User> showFriends(User user);
+    List<User> showFriends(User user, boolean withFriends);
 
-    List<User> showCommonFriends(User user, User friend);
+    List<User> showCommonFriends(User user, User friend, boolean withFriends);
 }
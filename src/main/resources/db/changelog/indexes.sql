@@ -0,0 +1,11 @@
+--liquibase formatted sql
+--changeset filmorate_sql:reverse_and_rate_indexes
+
+-- Likes of a film, primary key starts with user_id
+CREATE INDEX IF NOT EXISTS likes_film_user_idx ON likes (film_id, user_id);
+
+-- Who has the user as a friend, primary key starts with user_id
+CREATE INDEX IF NOT EXISTS friendship_friend_user_idx ON friendship (friend_id, user_id);
+
+-- Most popular films, in the order they are shown
+CREATE INDEX IF NOT EXISTS films_rate_film_idx ON films (rate DESC, film_id DESC);
@@ -51,4 +51,10 @@ CREATE TABLE IF NOT EXISTS friendship
     friend_id bigint NOT NULL REFERENCES users (user_id),
     friend_status varchar(10) NOT NULL,
     CONSTRAINT user_friend_pk PRIMARY KEY (user_id, friend_id)
-);
\ No newline at end of file
+);
+
+CREATE INDEX IF NOT EXISTS likes_film_user_idx ON likes (film_id, user_id);
+
+CREATE INDEX IF NOT EXISTS friendship_friend_user_idx ON friendship (friend_id, user_id);
+
+CREATE INDEX IF NOT EXISTS films_rate_film_idx ON films (rate DESC, film_id DESC);
\ No newline at end of file
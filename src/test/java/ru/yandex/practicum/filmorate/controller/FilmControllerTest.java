@@ -10,6 +10,7 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import ru.yandex.practicum.filmorate.exception.EntityNotFoundException;
@@ -241,6 +242,30 @@ class FilmControllerTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("$.message").value(errorMessage));
     }
 
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    public void shouldExportFilms() throws Exception {
+        mockMvc.perform(
+                        post("/films")
+                                .content(objectMapper.writeValueAsString(newFilm))
+                                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated());
+
+        MvcResult result = mockMvc.perform(
+                        get("/films/export"))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+
+        String response = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = response.split("\n");
+        assertEquals(1, lines.length);
+        assertEquals(newFilm.getName(), JsonPath.read(lines[0], "$.name"));
+    }
+
     @Test
     public void shouldNotCreateFilmWithIncorrectDuration() throws Exception {
         String errorMessage = "Incorrect duration";
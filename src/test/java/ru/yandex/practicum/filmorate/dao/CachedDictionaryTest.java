@@ -0,0 +1,73 @@
+package ru.yandex.practicum.filmorate.dao;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.exception.EntityNotFoundException;
+import ru.yandex.practicum.filmorate.model.dictionary.Genre;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CachedDictionaryTest {
+    private final List<Genre> genres = new ArrayList<>();
+    private int findAllCalls;
+    private CachedDictionary<Genre> cachedDictionary;
+
+    @BeforeEach
+    void setUp() {
+        genres.add(new Genre().setId(1).setName("Комедия"));
+        genres.add(new Genre().setId(3).setName("Мультфильм"));
+
+        cachedDictionary = new CachedDictionary<>(new Dictionary<Genre>() {
+            @Override
+            public List<Genre> findAll() {
+                findAllCalls++;
+                return new ArrayList<>(genres);
+            }
+
+            @Override
+            public Genre getById(Integer id) {
+                throw new UnsupportedOperationException();
+            }
+        }, Genre::getId, "Genre");
+        cachedDictionary.afterPropertiesSet();
+    }
+
+    @Test
+    @DisplayName("Check that values are served from cache")
+    void shouldServeValuesFromCache() {
+        assertThat(cachedDictionary.findAll().size()).isEqualTo(2);
+        assertSame(genres.get(1), cachedDictionary.getById(3));
+        assertSame(cachedDictionary.getById(3), cachedDictionary.getById(3));
+        assertEquals(1, findAllCalls);
+    }
+
+    @Test
+    @DisplayName("Check that missing id is not found")
+    void shouldNotFindMissingId() {
+        final EntityNotFoundException exception = assertThrows(EntityNotFoundException.class,
+                () -> cachedDictionary.getById(2));
+
+        assertEquals("Genre with ID 2 does not exist", exception.getMessage());
+        assertThrows(EntityNotFoundException.class, () -> cachedDictionary.getById(-1));
+        assertThrows(EntityNotFoundException.class, () -> cachedDictionary.getById(100));
+    }
+
+    @Test
+    @DisplayName("Check that invalidation reloads values")
+    void shouldReloadAfterInvalidate() {
+        genres.add(new Genre().setId(2).setName("Драма"));
+
+        cachedDictionary.invalidate();
+
+        assertThat(cachedDictionary.findAll().size()).isEqualTo(3);
+        assertThat(cachedDictionary.getById(2)).hasFieldOrPropertyWithValue("name", "Драма");
+        assertEquals(2, findAllCalls);
+    }
+}
@@ -3,8 +3,6 @@ package ru.yandex.practicum.filmorate.dao;
 import lombok.RequiredArgsConstructor;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
-import org.junit.jupiter.params.ParameterizedTest;
-import org.junit.jupiter.params.provider.ValueSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -15,6 +13,7 @@ import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.model.dictionary.Genre;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 
@@ -65,6 +64,23 @@ class FilmDbStorageTest {
         assertThat(films.get(1)).hasFieldOrPropertyWithValue("id", film2.getId());
     }
 
+    @Test
+    @DisplayName("Check that films are paged by cursor")
+    void shouldFindFilmsPage() {
+        Film film1 = filmStorage.create(createNewFilm1());
+        Film film2 = filmStorage.create(createNewFilm2());
+        Film film3 = filmStorage.create(createUpdatedFilm1());
+
+        List<Film> firstPage = filmStorage.findAll(null, 2);
+        List<Film> secondPage = filmStorage.findAll(firstPage.get(1).getId(), 2);
+
+        assertThat(firstPage.size()).isEqualTo(2);
+        assertThat(firstPage.get(0)).hasFieldOrPropertyWithValue("id", film1.getId());
+        assertThat(firstPage.get(1)).hasFieldOrPropertyWithValue("id", film2.getId());
+        assertThat(secondPage.size()).isEqualTo(1);
+        assertThat(secondPage.get(0)).hasFieldOrPropertyWithValue("id", film3.getId());
+    }
+
     @Test
     @DisplayName("Check that film was created")
     void shouldCreateFilm() {
@@ -76,7 +92,7 @@ class FilmDbStorageTest {
     @Test
     @DisplayName("Check that film was updated")
     void shouldUpdateFilm() {
-        Film film = filmStorage.create(createNewFilm1());
+        Film film = filmStorage.create(createNewFilm2());
         Film changedFilm = createUpdatedFilm1();
 
         changedFilm.setId(film.getId());
@@ -87,7 +103,9 @@ class FilmDbStorageTest {
         assertThat(updatedFilm).hasFieldOrPropertyWithValue("description", changedFilm.getDescription());
         assertThat(updatedFilm).hasFieldOrPropertyWithValue("releaseDate", changedFilm.getReleaseDate());
         assertThat(updatedFilm).hasFieldOrPropertyWithValue("duration", changedFilm.getDuration());
-        assertThat(updatedFilm).hasFieldOrPropertyWithValue("rate", changedFilm.getRate());
+        // Rate is changed only by likes
+        assertThat(updatedFilm).hasFieldOrPropertyWithValue("rate", film.getRate());
+        assertThat(filmStorage.getById(film.getId())).hasFieldOrPropertyWithValue("rate", film.getRate());
     }
 
     @Test
@@ -107,6 +125,15 @@ class FilmDbStorageTest {
         assertThat(receivedFilm.getMpa().getName()).isEqualTo("PG");
     }
 
+    @Test
+    @DisplayName("Check that film existence is checked by id")
+    void shouldCheckFilmExists() {
+        Film film = filmStorage.create(createNewFilm1());
+
+        assertThat(filmStorage.exists(film.getId())).isTrue();
+        assertThat(filmStorage.exists(-1L)).isFalse();
+    }
+
     @Test
     @DisplayName("Check that can't receive film by incorrect id")
     void shouldNotGetFilmById() {
@@ -186,6 +213,33 @@ class FilmDbStorageTest {
         assertThat(filmFromDb.getLikeFromUserId().size()).isEqualTo(0);
     }
 
+    @Test
+    @DisplayName("Check that like and its removal change rate")
+    void shouldChangeRateOnLike() {
+        User user = userStorage.create(createNewUser1());
+        Film film = filmStorage.create(createNewFilm2());
+
+        filmStorage.addLike(film, user.getId());
+
+        assertThat(filmStorage.getById(film.getId())).hasFieldOrPropertyWithValue("rate", 11);
+
+        filmStorage.deleteLike(film, user.getId());
+
+        assertThat(filmStorage.getById(film.getId())).hasFieldOrPropertyWithValue("rate", 10);
+    }
+
+    @Test
+    @DisplayName("Check that duplicate like doesn't change rate")
+    void shouldNotChangeRateOnDuplicateLike() {
+        User user = userStorage.create(createNewUser1());
+        Film film = filmStorage.create(createNewFilm2());
+
+        filmStorage.addLike(film, user.getId());
+        assertThrows(DuplicateException.class, () -> filmStorage.addLike(film, user.getId()));
+
+        assertThat(filmStorage.getById(film.getId())).hasFieldOrPropertyWithValue("rate", 11);
+    }
+
     @Test
     @DisplayName("Check that can't remove nonexistent like")
     void shouldNotDeleteNonexistentLike() {
@@ -207,6 +261,31 @@ class FilmDbStorageTest {
         assertThat(popularFilms.size()).isEqualTo(0);
     }
 
+    @Test
+    @DisplayName("Check that most popular films have only their own genres and likes")
+    void shouldShowMostPopularFilmsWithOwnGenresAndLikes() {
+        User user1 = userStorage.create(createNewUser1());
+        User user2 = userStorage.create(createNewUser2());
+        Film film1 = createNewFilm1();
+        film1.addGenre(new Genre()
+                .setId(1));
+        Film film2 = createNewFilm2();
+        film2.addGenre(new Genre()
+                .setId(2));
+
+        filmStorage.create(film1);
+        filmStorage.create(film2);
+        filmStorage.addLike(film1, user1.getId());
+        filmStorage.addLike(film2, user2.getId());
+        List<Film> popularFilms = filmStorage.showMostPopularFilms(1);
+
+        assertThat(popularFilms.size()).isEqualTo(1);
+        assertThat(popularFilms.get(0)).hasFieldOrPropertyWithValue("id", film2.getId());
+        assertThat(popularFilms.get(0)).hasFieldOrPropertyWithValue("likeFromUserId", Set.of(user2.getId()));
+        assertThat(popularFilms.get(0).getGenres().size()).isEqualTo(1);
+        assertThat((popularFilms.get(0).getGenres().toArray())[0]).hasFieldOrPropertyWithValue("id", 2);
+    }
+
     @Test
     @DisplayName("Check that films' list has film with genres")
     void shouldFindFilmWithGenres() {
@@ -226,6 +305,37 @@ class FilmDbStorageTest {
                 .hasFieldOrPropertyWithValue("name", "Комедия");
     }
 
+    @Test
+    @DisplayName("Check that update adds and removes only changed genres")
+    void shouldUpdateChangedGenres() {
+        Film film = createNewFilm1();
+        film.addGenre(new Genre()
+                .setId(1));
+        film.addGenre(new Genre()
+                .setId(2));
+        filmStorage.create(film);
+
+        filmStorage.update(filmStorage.getById(film.getId())
+                .setGenres(Set.of(new Genre().setId(2), new Genre().setId(3))));
+        Film updatedFilm = filmStorage.getById(film.getId());
+
+        assertThat(updatedFilm.getGenres())
+                .extracting(Genre::getId)
+                .containsExactly(2, 3);
+
+        filmStorage.update(updatedFilm.setDescription("Genres are the same"));
+        Film sameGenresFilm = filmStorage.getById(film.getId());
+
+        assertThat(sameGenresFilm.getDescription()).isEqualTo("Genres are the same");
+        assertThat(sameGenresFilm.getGenres())
+                .extracting(Genre::getId)
+                .containsExactly(2, 3);
+
+        filmStorage.update(sameGenresFilm.setGenres(null));
+
+        assertThat(filmStorage.getById(film.getId()).getGenres()).isEmpty();
+    }
+
     @Test
     @DisplayName("Check that films' list has film with two genres")
     void shouldFindFilmWithTwoGenres() {
@@ -399,35 +509,26 @@ class FilmDbStorageTest {
                 .hasFieldOrPropertyWithValue("name", "Мультфильм");
     }
 
-    @ParameterizedTest
-    @ValueSource(strings = {"film", "Film", "IL"})
-    @DisplayName("Check that film was found case-insensitive")
-    void shouldSearchFilmByTitle(String filter) {
-        filmStorage.create(createNewFilm1());
-        filmStorage.create(createNewFilm2());
-
-        assertThat(filmStorage.searchFilmByTitle(filter).size())
-                .isEqualTo(2);
-    }
-
     @Test
-    @DisplayName("Check that film was found in correct order")
-    void shouldSearchFilmByTitleWithOrder() {
-        filmStorage.create(createNewFilm1());
-        filmStorage.create(createNewFilm2());
-
-        List<Film> found = filmStorage.searchFilmByTitle("film");
-
-        assertEquals(2, found.size());
-        assertThat(found.get(0))
-                .hasFieldOrPropertyWithValue("rate", 10);
-    }
+    @DisplayName("Check that all films are exported with genres and likes")
+    void shouldExportAllFilms() {
+        User user = userStorage.create(createNewUser1());
+        Film film1 = createNewFilm1();
+        film1.addGenre(new Genre()
+                .setId(2));
+        filmStorage.create(film1);
+        Film film2 = filmStorage.create(createNewFilm2());
+        filmStorage.addLike(film2, user.getId());
 
-    @Test
-    @DisplayName("Check that film was not found")
-    void shouldSearchFilmByTitleWithNotExistName() {
+        List<Film> films = new ArrayList<>();
+        filmStorage.exportAll(films::add);
 
-        assertThat(filmStorage.searchFilmByTitle("qwerty123"))
-                .isEmpty();
+        assertThat(films.size()).isEqualTo(2);
+        assertThat(films.get(0)).hasFieldOrPropertyWithValue("id", film1.getId());
+        assertThat(films.get(0).getGenres().size()).isEqualTo(1);
+        assertThat(films.get(0).getLikeFromUserId().size()).isEqualTo(0);
+        assertThat(films.get(1)).hasFieldOrPropertyWithValue("id", film2.getId());
+        assertThat(films.get(1).getGenres().size()).isEqualTo(0);
+        assertThat(films.get(1)).hasFieldOrPropertyWithValue("likeFromUserId", Set.of(user.getId()));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,109 @@
+package ru.yandex.practicum.filmorate.dao;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InstrumentedJdbcTemplateTest {
+    private InstrumentedJdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new InstrumentedJdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:instrumented-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", ""),
+                Duration.ofSeconds(10));
+
+        jdbcTemplate.execute("CREATE TABLE items (item_id BIGINT PRIMARY KEY, item_name VARCHAR(10));");
+        jdbcTemplate.update("INSERT INTO items VALUES (?, ?), (?, ?), (?, ?);", 1, "a", 2, "b", 3, "c");
+        jdbcTemplate.resetStatistics();
+    }
+
+    @Test
+    @DisplayName("Check that statement is named by calling method and counts rows")
+    void shouldRecordStatementStatistics() {
+        jdbcTemplate.queryForList("SELECT item_name FROM items WHERE item_id > ?;", String.class, 1);
+        jdbcTemplate.queryForList("SELECT item_name FROM items WHERE item_id > ?;", String.class, 0);
+
+        List<InstrumentedJdbcTemplate.QueryStatistics> statements = jdbcTemplate.slowestStatements(10);
+
+        assertThat(statements).hasSize(1);
+        assertThat(statements.get(0).getName())
+                .isEqualTo("InstrumentedJdbcTemplateTest.shouldRecordStatementStatistics");
+        assertThat(statements.get(0).getExecutions()).isEqualTo(2);
+        assertThat(statements.get(0).getRowsRead()).isEqualTo(5);
+        assertThat(statements.get(0).getRowsMapped()).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("Check that IN lists of different length are one statement")
+    void shouldMergeInLists() {
+        jdbcTemplate.queryForList("SELECT item_name FROM items WHERE item_id IN (?);", String.class, 1);
+        jdbcTemplate.queryForList("SELECT item_name FROM items WHERE item_id IN (?, ?);", String.class, 1, 2);
+        jdbcTemplate.update("DELETE FROM items WHERE item_id = ?;", 3);
+
+        List<InstrumentedJdbcTemplate.QueryStatistics> statements = jdbcTemplate.slowestStatements(10);
+
+        assertThat(statements).hasSize(2);
+        assertThat(statements).anySatisfy(statement -> {
+            assertThat(statement.getSql()).isEqualTo("SELECT item_name FROM items WHERE item_id IN (?...);");
+            assertThat(statement.getExecutions()).isEqualTo(2);
+            assertThat(statement.getRowsRead()).isEqualTo(3);
+        });
+        assertThat(statements).anySatisfy(statement ->
+                assertThat(statement.getRowsMapped()).isEqualTo(1));
+    }
+
+    @Test
+    @DisplayName("Check that the same SQL run by different methods is different statements")
+    void shouldNameStatementByEveryCaller() {
+        selectNames();
+        selectNamesAgain();
+        selectNames();
+
+        List<InstrumentedJdbcTemplate.QueryStatistics> statements = jdbcTemplate.slowestStatements(10);
+
+        assertThat(statements).hasSize(2);
+        assertThat(statements).anySatisfy(statement -> {
+            assertThat(statement.getName()).isEqualTo("InstrumentedJdbcTemplateTest.selectNames");
+            assertThat(statement.getExecutions()).isEqualTo(2);
+        });
+        assertThat(statements).anySatisfy(statement -> {
+            assertThat(statement.getName()).isEqualTo("InstrumentedJdbcTemplateTest.selectNamesAgain");
+            assertThat(statement.getExecutions()).isEqualTo(1);
+        });
+    }
+
+    @Test
+    @DisplayName("Check that rows of row callbacks are counted and negative count gives no statements")
+    void shouldCountRowCallbackRows() {
+        List<String> names = new ArrayList<>();
+        jdbcTemplate.query("SELECT item_name FROM items WHERE item_id > ?;",
+                rs -> {
+                    names.add(rs.getString("item_name"));
+                }, 0);
+
+        List<InstrumentedJdbcTemplate.QueryStatistics> statements = jdbcTemplate.slowestStatements(10);
+
+        assertThat(names).containsExactly("a", "b", "c");
+        assertThat(statements).hasSize(1);
+        assertThat(statements.get(0).getRowsRead()).isEqualTo(3);
+        assertThat(statements.get(0).getRowsMapped()).isEqualTo(3);
+        assertThat(jdbcTemplate.slowestStatements(-1)).isEmpty();
+    }
+
+    private void selectNames() {
+        jdbcTemplate.queryForList("SELECT item_name FROM items;", String.class);
+    }
+
+    private void selectNamesAgain() {
+        jdbcTemplate.queryForList("SELECT item_name FROM items;", String.class);
+    }
+}
@@ -0,0 +1,105 @@
+package ru.yandex.practicum.filmorate.dao;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.yandex.practicum.filmorate.utils.CreateTestFilm.createNewFilm2;
+import static ru.yandex.practicum.filmorate.utils.CreateTestUser.createNewUser1;
+import static ru.yandex.practicum.filmorate.utils.CreateTestUser.createNewUser2;
+
+@SpringBootTest(properties = {
+        "filmorate.likes.write-behind.enabled=true",
+        "filmorate.likes.write-behind.flush-interval-ms=60000"})
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Sql(scripts = "classpath:clean_test_db.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class LikeWriteBufferTest {
+    private final FilmDbStorage filmStorage;
+    private final UserDbStorage userStorage;
+    private final LikeWriteBuffer likeWriteBuffer;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Test
+    @DisplayName("Check that buffered likes are written on flush")
+    void shouldWriteLikesOnFlush() {
+        User user1 = userStorage.create(createNewUser1());
+        User user2 = userStorage.create(createNewUser2());
+        Film film = filmStorage.create(createNewFilm2());
+
+        filmStorage.addLike(film, user1.getId());
+        filmStorage.addLike(film, user2.getId());
+
+        assertThat(likeWriteBuffer.getDepth()).isEqualTo(2);
+        assertThat(filmStorage.getById(film.getId()).getLikeFromUserId().size()).isEqualTo(0);
+
+        likeWriteBuffer.flush();
+        Film filmFromDb = filmStorage.getById(film.getId());
+
+        assertThat(likeWriteBuffer.getDepth()).isEqualTo(0);
+        assertThat(filmFromDb).hasFieldOrPropertyWithValue("likeFromUserId", Set.of(user1.getId(), user2.getId()));
+        assertThat(filmFromDb).hasFieldOrPropertyWithValue("rate", 12);
+    }
+
+    @Test
+    @DisplayName("Check that like and unlike from one user are coalesced")
+    void shouldCoalesceLikeAndUnlike() {
+        User user = userStorage.create(createNewUser1());
+        Film film = filmStorage.create(createNewFilm2());
+
+        filmStorage.addLike(film, user.getId());
+        filmStorage.deleteLike(film, user.getId());
+
+        assertThat(likeWriteBuffer.getDepth()).isEqualTo(1);
+
+        likeWriteBuffer.flush();
+        Film filmFromDb = filmStorage.getById(film.getId());
+
+        assertThat(filmFromDb.getLikeFromUserId().size()).isEqualTo(0);
+        assertThat(filmFromDb).hasFieldOrPropertyWithValue("rate", 10);
+    }
+
+    @Test
+    @DisplayName("Check that duplicate buffered like doesn't change rate")
+    void shouldSkipDuplicateLikeOnFlush() {
+        User user = userStorage.create(createNewUser1());
+        Film film = filmStorage.create(createNewFilm2());
+
+        filmStorage.addLike(film, user.getId());
+        likeWriteBuffer.flush();
+        filmStorage.addLike(film, user.getId());
+        likeWriteBuffer.flush();
+
+        assertThat(filmStorage.getById(film.getId())).hasFieldOrPropertyWithValue("rate", 11);
+    }
+
+    @Test
+    @DisplayName("Check that like after buffer stop is saved to fallback file")
+    void shouldSaveLikeAfterStopToFallbackFile(@TempDir Path directory) throws Exception {
+        Path fallbackFile = directory.resolve("pending-likes.csv");
+        LikeWriteBuffer stoppedBuffer = new LikeWriteBuffer(jdbcTemplate, transactionTemplate,
+                new SimpleMeterRegistry(), 60000, 1, fallbackFile.toString());
+        stoppedBuffer.start();
+        stoppedBuffer.stop();
+
+        stoppedBuffer.addLike(2L, 1L);
+
+        assertThat(Files.readAllLines(fallbackFile)).containsExactly("1,2,true");
+    }
+}
@@ -6,6 +6,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.jdbc.Sql;
 import ru.yandex.practicum.filmorate.exception.EntityNotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
@@ -13,6 +14,7 @@ import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.model.dictionary.Genre;
 
 import java.util.List;
+import java.util.concurrent.*;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -27,6 +29,7 @@ import static ru.yandex.practicum.filmorate.utils.CreateTestUser.*;
 @Sql(scripts = "classpath:clean_test_db.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
 class UserDbStorageTest {
     private final UserDbStorage userStorage;
+    private final JdbcTemplate jdbcTemplate;
 
     @Test
     @DisplayName("Check that users' list is empty")
@@ -58,6 +61,32 @@ class UserDbStorageTest {
         assertThat(users.get(1)).hasFieldOrPropertyWithValue("id", user1.getId());
     }
 
+    @Test
+    @DisplayName("Check that users are paged by cursor")
+    void shouldFindUsersPage() {
+        User user1 = userStorage.create(createNewUser1());
+        User user2 = userStorage.create(createNewUser2());
+        User user3 = userStorage.create(createUpdatedUser1());
+
+        List<User> firstPage = userStorage.findAll(null, 2, true);
+        List<User> secondPage = userStorage.findAll(firstPage.get(1).getId(), 2, true);
+
+        assertThat(firstPage.size()).isEqualTo(2);
+        assertThat(firstPage.get(0)).hasFieldOrPropertyWithValue("id", user3.getId());
+        assertThat(firstPage.get(1)).hasFieldOrPropertyWithValue("id", user2.getId());
+        assertThat(secondPage.size()).isEqualTo(1);
+        assertThat(secondPage.get(0)).hasFieldOrPropertyWithValue("id", user1.getId());
+    }
+
+    @Test
+    @DisplayName("Check that user existence is checked by id")
+    void shouldCheckUserExists() {
+        User user = userStorage.create(createNewUser1());
+
+        assertThat(userStorage.exists(user.getId())).isTrue();
+        assertThat(userStorage.exists(-1L)).isFalse();
+    }
+
     @Test
     @DisplayName("Check that user was created")
     void shouldCreateUser() {
@@ -115,8 +144,8 @@ class UserDbStorageTest {
         User user = userStorage.create(createNewUser1());
         User friend = userStorage.create(createNewUser2());
         userStorage.addFriend(user, friend);
-        List<User> friends = userStorage.showFriends(user);
-        List<User> friendsOfFriend = userStorage.showFriends(friend);
+        List<User> friends = userStorage.showFriends(user, true);
+        List<User> friendsOfFriend = userStorage.showFriends(friend, true);
 
         assertThat(friends.size()).isEqualTo(1);
         assertThat(friends.get(0)).hasFieldOrPropertyWithValue("id", friend.getId());
@@ -131,7 +160,7 @@ class UserDbStorageTest {
         User friend2 = userStorage.create(createNewUser2());
         userStorage.addFriend(user, friend1);
         userStorage.addFriend(user, friend2);
-        List<User> friends = userStorage.showFriends(user);
+        List<User> friends = userStorage.showFriends(user, true);
 
         assertThat(friends.size()).isEqualTo(2);
         assertThat(friends.get(0)).hasFieldOrPropertyWithValue("id", friend2.getId());
@@ -144,13 +173,13 @@ class UserDbStorageTest {
         User user = userStorage.create(createNewUser1());
         User friend = userStorage.create(createNewUser2());
         userStorage.addFriend(user, friend);
-        List<User> friends = userStorage.showFriends(user);
+        List<User> friends = userStorage.showFriends(user, true);
 
         assertThat(friends.size()).isEqualTo(1);
         assertThat(friends.get(0)).hasFieldOrPropertyWithValue("id", friend.getId());
 
         userStorage.deleteFriend(user, friend);
-        friends = userStorage.showFriends(user);
+        friends = userStorage.showFriends(user, true);
 
         assertThat(friends.size()).isEqualTo(0);
     }
@@ -163,12 +192,12 @@ class UserDbStorageTest {
         User friend2 = userStorage.create(createNewUser2());
         userStorage.addFriend(user, friend1);
         userStorage.addFriend(user, friend2);
-        List<User> friends = userStorage.showFriends(user);
+        List<User> friends = userStorage.showFriends(user, true);
 
         assertThat(friends.size()).isEqualTo(2);
 
         userStorage.deleteFriend(user, friend1);
-        friends = userStorage.showFriends(user);
+        friends = userStorage.showFriends(user, true);
 
         assertThat(friends.size()).isEqualTo(1);
         assertThat(friends.get(0)).hasFieldOrPropertyWithValue("id", friend2.getId());
@@ -182,7 +211,7 @@ class UserDbStorageTest {
         User friend = userStorage.create(createUpdatedUser1());
         userStorage.addFriend(user1, friend);
         userStorage.addFriend(user2, friend);
-        List<User> commonFriends = userStorage.showCommonFriends(user1, user2);
+        List<User> commonFriends = userStorage.showCommonFriends(user1, user2, true);
 
         assertThat(commonFriends.size()).isEqualTo(1);
         assertThat(commonFriends.get(0)).hasFieldOrPropertyWithValue("id", friend.getId());
@@ -244,7 +273,7 @@ class UserDbStorageTest {
         User friend2 = userStorage.create(createNewUser2());
         userStorage.addFriend(user, friend1);
         userStorage.addFriend(friend1, friend2);
-        List<User> friends = userStorage.showFriends(user);
+        List<User> friends = userStorage.showFriends(user, true);
 
         assertThat(friends.get(0)).hasFieldOrPropertyWithValue("id", friend1.getId());
         assertThat(friends.get(0).getFriends().size()).isEqualTo(1);
@@ -260,7 +289,7 @@ class UserDbStorageTest {
         userStorage.addFriend(user1, friend);
         userStorage.addFriend(user2, friend);
         userStorage.addFriend(friend, user1);
-        List<User> commonFriends = userStorage.showCommonFriends(user1, user2);
+        List<User> commonFriends = userStorage.showCommonFriends(user1, user2, true);
 
         assertThat(commonFriends.size()).isEqualTo(1);
         assertThat(commonFriends.get(0)).hasFieldOrPropertyWithValue("id", friend.getId());
@@ -292,8 +321,8 @@ class UserDbStorageTest {
         User friend = userStorage.create(createNewUser2());
         userStorage.addFriend(user, friend);
         userStorage.addFriend(friend, user);
-        List<User> friends = userStorage.showFriends(user);
-        List<User> friendsOfFriend = userStorage.showFriends(friend);
+        List<User> friends = userStorage.showFriends(user, true);
+        List<User> friendsOfFriend = userStorage.showFriends(friend, true);
 
         assertThat(friends.size()).isEqualTo(1);
         assertThat(friends.get(0)).hasFieldOrPropertyWithValue("id", friend.getId());
@@ -301,10 +330,90 @@ class UserDbStorageTest {
         assertThat(friendsOfFriend.get(0)).hasFieldOrPropertyWithValue("id", user.getId());
 
         userStorage.deleteFriend(user, friend);
-        friends = userStorage.showFriends(user);
-        friendsOfFriend = userStorage.showFriends(friend);
+        friends = userStorage.showFriends(user, true);
+        friendsOfFriend = userStorage.showFriends(friend, true);
 
         assertThat(friends.size()).isEqualTo(0);
         assertThat(friendsOfFriend.size()).isEqualTo(1);
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Check that mutual requests sent at the same time are both approved")
+    void shouldApproveConcurrentMutualRequests() throws Exception {
+        User user = userStorage.create(createNewUser1());
+        User friend = userStorage.create(createNewUser2());
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        CountDownLatch start = new CountDownLatch(1);
+
+        Future<?> request = executor.submit(() -> {
+            start.await();
+            userStorage.addFriend(user, friend);
+            return null;
+        });
+        Future<?> answer = executor.submit(() -> {
+            start.await();
+            userStorage.addFriend(friend, user);
+            return null;
+        });
+        start.countDown();
+        request.get(10, TimeUnit.SECONDS);
+        answer.get(10, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        List<String> statuses = jdbcTemplate.queryForList(
+                "SELECT friend_status FROM friendship WHERE user_id IN (?, ?);",
+                String.class, user.getId(), friend.getId());
+
+        assertThat(statuses).containsExactly("APPROVED", "APPROVED");
+    }
+
+    @Test
+    @DisplayName("Check that deleted friend keeps other approved friendships")
+    void shouldKeepOtherFriendshipsApproved() {
+        User user1 = userStorage.create(createNewUser1());
+        User user2 = userStorage.create(createNewUser2());
+        User friend = userStorage.create(createUpdatedUser1());
+        userStorage.addFriend(user1, friend);
+        userStorage.addFriend(friend, user1);
+        userStorage.addFriend(user2, friend);
+        userStorage.addFriend(friend, user2);
+        userStorage.deleteFriend(user1, friend);
+
+        String status = jdbcTemplate.queryForObject(
+                "SELECT friend_status FROM friendship WHERE user_id = ? AND friend_id = ?;",
+                String.class, friend.getId(), user2.getId());
+
+        assertThat(status).isEqualTo("APPROVED");
+    }
+
+    @Test
+    @DisplayName("Check that deleted friend is not common friend anymore")
+    void shouldNotShowDeletedCommonFriend() {
+        User user1 = userStorage.create(createNewUser1());
+        User user2 = userStorage.create(createNewUser2());
+        User friend = userStorage.create(createUpdatedUser1());
+        userStorage.addFriend(user1, friend);
+        userStorage.addFriend(user2, friend);
+        userStorage.deleteFriend(user2, friend);
+        List<User> commonFriends = userStorage.showCommonFriends(user1, user2, true);
+
+        assertThat(commonFriends.size()).isEqualTo(0);
+    }
+
+    @Test
+    @DisplayName("Check that users' list without friends doesn't load friend ids")
+    void shouldFindUsersWithoutFriends() {
+        User user = userStorage.create(createNewUser1());
+        User friend = userStorage.create(createNewUser2());
+        userStorage.addFriend(user, friend);
+        userStorage.addFriend(friend, user);
+        List<User> users = userStorage.findAll(false);
+        List<User> friends = userStorage.showFriends(user, false);
+
+        assertThat(users.size()).isEqualTo(2);
+        assertThat(users.get(0).getFriends().size()).isEqualTo(0);
+        assertThat(users.get(1).getFriends().size()).isEqualTo(0);
+        assertThat(friends.size()).isEqualTo(1);
+        assertThat(friends.get(0).getFriends().size()).isEqualTo(0);
+    }
+}
@@ -0,0 +1,91 @@
+package ru.yandex.practicum.filmorate.interceptor;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.DispatcherType;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LogsInterceptorTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final LogsInterceptor interceptor = new LogsInterceptor(meterRegistry);
+
+    @Test
+    @DisplayName("Check that requests are timed by templated path")
+    void shouldTimeRequestsByRoute() {
+        handle("/films/1", 200);
+        handle("/films/2", 200);
+
+        assertThat(meterRegistry.get("filmorate.http.requests")
+                .tags("method", "GET", "uri", "/films/{id}", "status", "200", "outcome", "SUCCESS")
+                .timer()
+                .count()).isEqualTo(2);
+        assertThat(meterRegistry.find("filmorate.http.requests.errors").counter()).isNull();
+    }
+
+    @Test
+    @DisplayName("Check that active requests are gauged and errors are counted")
+    void shouldCountActiveAndFailedRequests() {
+        MockHttpServletRequest request = request("/films/1");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        interceptor.preHandle(request, response, new Object());
+
+        assertThat(meterRegistry.get("filmorate.http.requests.active")
+                .tags("method", "GET", "uri", "/films/{id}")
+                .gauge()
+                .value()).isEqualTo(1);
+
+        response.setStatus(404);
+        interceptor.afterCompletion(request, response, new Object(), null);
+
+        assertThat(meterRegistry.get("filmorate.http.requests.active").gauge().value()).isEqualTo(0);
+        assertThat(meterRegistry.get("filmorate.http.requests.errors")
+                .tags("status", "404", "outcome", "CLIENT_ERROR")
+                .counter()
+                .count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Check that async request is gauged and timed once across its dispatches")
+    void shouldRecordAsyncRequestOnce() {
+        MockHttpServletRequest request = request("/films/1");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        interceptor.preHandle(request, response, new Object());
+        interceptor.afterConcurrentHandlingStarted(request, response, new Object());
+
+        // Response is written after the handler returned, then the request is dispatched again
+        request.setDispatcherType(DispatcherType.ASYNC);
+        interceptor.preHandle(request, response, new Object());
+
+        assertThat(meterRegistry.get("filmorate.http.requests.active").gauge().value()).isEqualTo(1);
+
+        response.setStatus(200);
+        interceptor.afterCompletion(request, response, new Object(), null);
+
+        assertThat(meterRegistry.get("filmorate.http.requests.active").gauge().value()).isEqualTo(0);
+        assertThat(meterRegistry.get("filmorate.http.requests")
+                .tags("uri", "/films/{id}", "status", "200")
+                .timer()
+                .count()).isEqualTo(1);
+    }
+
+    private void handle(String uri, int status) {
+        MockHttpServletRequest request = request(uri);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        interceptor.preHandle(request, response, new Object());
+        response.setStatus(status);
+        interceptor.afterCompletion(request, response, new Object(), null);
+    }
+
+    private MockHttpServletRequest request(String uri) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/films/{id}");
+        return request;
+    }
+}
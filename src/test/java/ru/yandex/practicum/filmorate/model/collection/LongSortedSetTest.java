@@ -0,0 +1,74 @@
+package ru.yandex.practicum.filmorate.model.collection;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LongSortedSetTest {
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @Test
+    @DisplayName("Check that ids are kept sorted and unique")
+    void shouldKeepIdsSorted() {
+        LongSortedSet ids = new LongSortedSet(List.of(5L, 1L, 9L, 3L));
+
+        assertThat(ids.add(3L)).isFalse();
+        assertThat(ids.add(7L)).isTrue();
+        assertThat(ids.toLongArray()).containsExactly(1, 3, 5, 7, 9);
+        assertThat(ids).isEqualTo(Set.of(1L, 3L, 5L, 7L, 9L));
+        assertThat(ids.hashCode()).isEqualTo(Set.of(1L, 3L, 5L, 7L, 9L).hashCode());
+    }
+
+    @Test
+    @DisplayName("Check that ids are removed by value and by iterator")
+    void shouldRemoveIds() {
+        LongSortedSet ids = new LongSortedSet(List.of(1L, 2L, 3L, 4L));
+
+        assertThat(ids.remove(2L)).isTrue();
+        assertThat(ids.remove(2L)).isFalse();
+        assertThat(ids.remove(3)).isFalse();
+
+        Iterator<Long> iterator = ids.iterator();
+        iterator.next();
+        iterator.remove();
+
+        assertThat(ids.toLongArray()).containsExactly(3, 4);
+        assertThat(ids.contains(3L)).isTrue();
+        assertThat(ids.contains(1L)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Check that model returns read-only view of ids")
+    void shouldReturnReadOnlyView() {
+        Film film = new Film();
+        film.addLikeFromUserId(2L);
+        Set<Long> likes = film.getLikeFromUserId();
+        film.addLikeFromUserId(1L);
+
+        assertThat(likes).containsExactly(1L, 2L);
+        assertThrows(UnsupportedOperationException.class, () -> likes.add(3L));
+    }
+
+    @Test
+    @DisplayName("Check that ids are written and read as JSON array")
+    void shouldSerializeToJson() throws Exception {
+        User user = new User();
+        user.addFriend(3L);
+        user.addFriend(1L);
+
+        String json = objectMapper.writeValueAsString(user);
+        User userFromJson = objectMapper.readValue(json, User.class);
+
+        assertThat(json).contains("\"friends\":[1,3]");
+        assertThat(userFromJson.getFriends()).containsExactly(1L, 3L);
+    }
+}
@@ -1,5 +1,6 @@
 package ru.yandex.practicum.filmorate.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -9,6 +10,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.jdbc.Sql;
+import ru.yandex.practicum.filmorate.exception.EntityNotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.model.dictionary.Genre;
@@ -16,8 +19,10 @@ import ru.yandex.practicum.filmorate.model.dictionary.Genre;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static ru.yandex.practicum.filmorate.utils.CreateTestFilm.createNewFilm1;
 import static ru.yandex.practicum.filmorate.utils.CreateTestFilm.createNewFilm2;
+import static ru.yandex.practicum.filmorate.utils.CreateTestFilm.createUpdatedFilm1;
 import static ru.yandex.practicum.filmorate.utils.CreateTestUser.createNewUser1;
 
 @SpringBootTest
@@ -27,6 +32,7 @@ import static ru.yandex.practicum.filmorate.utils.CreateTestUser.createNewUser1;
 class FilmServiceTest {
     private final FilmService filmService;
     private final UserService userService;
+    private final MeterRegistry meterRegistry;
 
     @ParameterizedTest(name = "#{index} - Check that can show {0} most popular films")
     @ValueSource(ints = {1, 2})
@@ -75,4 +81,99 @@ class FilmServiceTest {
         assertThat((popularFilms.get(0).getLikeFromUserId().toArray())[0]).isEqualTo(user.getId());
         assertThat((popularFilms.get(1).getLikeFromUserId().size())).isEqualTo(0);
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Check that non-positive count of popular films is rejected")
+    void shouldNotShowMostPopularFilmsWithNonPositiveCount() {
+        assertThrows(ValidationException.class, () -> filmService.showMostPopularFilms(0));
+        assertThrows(ValidationException.class, () -> filmService.showMostPopularFilms(-1));
+    }
+
+    @Test
+    @DisplayName("Check that like of unknown user or film is rejected")
+    void shouldNotAddLikeOfUnknownUserOrFilm() {
+        User user = userService.create(createNewUser1());
+        Film film = filmService.create(createNewFilm1());
+
+        assertThrows(EntityNotFoundException.class, () -> filmService.addLike(film.getId(), -1L));
+        assertThrows(EntityNotFoundException.class, () -> filmService.addLike(-1L, user.getId()));
+        assertThrows(EntityNotFoundException.class, () -> filmService.deleteLike(-1L, user.getId()));
+    }
+
+    @Test
+    @DisplayName("Check that search ranks films with equal relevance by rate")
+    void shouldSearchFilmsByRate() {
+        User user = userService.create(createNewUser1());
+        Film film1 = filmService.create(createNewFilm1());
+        Film film2 = filmService.create(createNewFilm2());
+        filmService.addLike(film1.getId(), user.getId());
+
+        List<Film> found = filmService.searchFilms("FILM", "title", 10);
+        assertThat(found.size()).isEqualTo(2);
+        assertThat(found.get(0)).hasFieldOrPropertyWithValue("id", film1.getId());
+        assertThat(found.get(1)).hasFieldOrPropertyWithValue("id", film2.getId());
+        assertThat(filmService.searchFilms("film", "title", 1).size()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Check that search index follows film update")
+    void shouldSearchUpdatedFilm() {
+        Film film = filmService.create(createNewFilm1());
+        filmService.update(createUpdatedFilm1().setId(film.getId()));
+
+        assertThat(filmService.searchFilms("eiusmod", "title", 10)).isEmpty();
+        assertThat(filmService.searchFilms("updated", "title", 10).get(0))
+                .hasFieldOrPropertyWithValue("id", film.getId());
+    }
+
+    @Test
+    @DisplayName("Check that search by several fields ranks title match first")
+    void shouldSearchFilmsByTitleDescriptionAndGenre() {
+        Film byTitle = filmService.create(createNewFilm1().setName("Комедия положений"));
+        Film byGenre = filmService.create(createNewFilm2());
+        byGenre.addGenre(new Genre()
+                .setId(1));
+        filmService.update(byGenre);
+
+        List<Film> found = filmService.searchFilms("комедия", "title, genre", 10);
+        assertThat(found.size()).isEqualTo(2);
+        assertThat(found.get(0)).hasFieldOrPropertyWithValue("id", byTitle.getId());
+        assertThat(found.get(1)).hasFieldOrPropertyWithValue("id", byGenre.getId());
+        assertThat(filmService.searchFilms("bla", "description", 10).get(0))
+                .hasFieldOrPropertyWithValue("id", byGenre.getId());
+    }
+
+    @Test
+    @DisplayName("Check that search by unknown field is rejected")
+    void shouldNotSearchFilmsByUnknownField() {
+        assertThrows(IllegalArgumentException.class, () -> filmService.searchFilms("film", "title,director", 10));
+    }
+
+    @Test
+    @DisplayName("Check that cached search is invalidated by film changes and reordered by likes")
+    void shouldInvalidateCachedSearch() {
+        User user = userService.create(createNewUser1());
+        Film film1 = filmService.create(createNewFilm1());
+        Film film2 = filmService.create(createNewFilm2());
+        double hits = searchCacheHits();
+
+        assertThat(filmService.searchFilms("film", "title", 1).get(0)).hasFieldOrPropertyWithValue("id", film2.getId());
+        assertThat(filmService.searchFilms("FILM", "title", 1).get(0)).hasFieldOrPropertyWithValue("id", film2.getId());
+        assertThat(searchCacheHits()).isEqualTo(hits + 1);
+
+        // Like changes only the order, the cached search stays
+        filmService.addLike(film1.getId(), user.getId());
+        assertThat(filmService.searchFilms("film", "title", 1).get(0)).hasFieldOrPropertyWithValue("id", film1.getId());
+        assertThat(searchCacheHits()).isEqualTo(hits + 2);
+
+        filmService.create(createUpdatedFilm1());
+        assertThat(filmService.searchFilms("film", "title", 10).size()).isEqualTo(3);
+    }
+
+    private double searchCacheHits() {
+        return meterRegistry.get("cache.gets")
+                .tags("cache", "filmSearch", "result", "hit")
+                .functionCounter()
+                .count();
+    }
+}
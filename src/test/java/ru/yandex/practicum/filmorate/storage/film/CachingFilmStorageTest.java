@@ -0,0 +1,99 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.dictionary.Genre;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.yandex.practicum.filmorate.utils.CreateTestFilm.createNewFilm1;
+import static ru.yandex.practicum.filmorate.utils.CreateTestFilm.createNewFilm2;
+
+class CachingFilmStorageTest {
+    private final CountingFilmStorage countingStorage = new CountingFilmStorage();
+    private final CachingFilmStorage filmStorage = new CachingFilmStorage(countingStorage,
+            Caffeine.newBuilder().maximumSize(100).build());
+
+    @Test
+    @DisplayName("Check that film is loaded once until it is changed")
+    void shouldCacheFilmUntilChange() {
+        Film film = filmStorage.create(createNewFilm1());
+
+        filmStorage.getById(film.getId());
+        filmStorage.getById(film.getId());
+        assertThat(countingStorage.loadedIds).isEqualTo(List.of(film.getId()));
+
+        filmStorage.addLike(film, 1L);
+        filmStorage.getById(film.getId());
+        filmStorage.update(film);
+        filmStorage.getById(film.getId());
+        filmStorage.invalidate(Set.of(film.getId()));
+        filmStorage.getById(film.getId());
+
+        assertThat(countingStorage.loadedIds.size()).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("Check that only missing films are loaded by ids")
+    void shouldLoadOnlyMissingFilms() {
+        Film film1 = filmStorage.create(createNewFilm1());
+        Film film2 = filmStorage.create(createNewFilm2());
+        filmStorage.getById(film1.getId());
+
+        List<Film> films = filmStorage.findByIds(List.of(film2.getId(), 100L, film1.getId()));
+
+        assertThat(films).containsExactly(film2, film1);
+        assertThat(countingStorage.loadedIds).containsExactlyInAnyOrder(film1.getId(), film2.getId(), 100L);
+    }
+
+    @Test
+    @DisplayName("Check that changes of returned films don't reach the cache")
+    void shouldReturnCopiesOfCachedFilms() {
+        Film film = filmStorage.create(createNewFilm1());
+
+        filmStorage.getById(film.getId()).setName("Changed").addGenre(new Genre().setId(1));
+        filmStorage.findByIds(List.of(film.getId())).get(0).setName("Changed");
+
+        assertThat(filmStorage.getById(film.getId())).hasFieldOrPropertyWithValue("name", film.getName());
+        assertThat(filmStorage.getById(film.getId()).getGenres()).isEmpty();
+        assertThat(countingStorage.loadedIds).isEqualTo(List.of(film.getId()));
+    }
+
+    @Test
+    @DisplayName("Check that films loaded before a concurrent change are not cached")
+    void shouldNotCacheFilmsLoadedBeforeChange() {
+        Film film = filmStorage.create(createNewFilm1());
+
+        // Change is made while the films are being loaded
+        countingStorage.duringFindByIds = () -> filmStorage.invalidate(Set.of(film.getId()));
+        filmStorage.findByIds(List.of(film.getId()));
+        countingStorage.duringFindByIds = () -> { };
+        filmStorage.getById(film.getId());
+
+        assertThat(countingStorage.loadedIds).isEqualTo(List.of(film.getId(), film.getId()));
+    }
+
+    private static class CountingFilmStorage extends InMemoryFilmStorage {
+        private final List<Long> loadedIds = new ArrayList<>();
+        private Runnable duringFindByIds = () -> { };
+
+        @Override
+        public Film getById(Long filmId) {
+            loadedIds.add(filmId);
+            return super.getById(filmId);
+        }
+
+        @Override
+        public List<Film> findByIds(List<Long> ids) {
+            loadedIds.addAll(ids);
+            List<Film> films = super.findByIds(ids);
+            duringFindByIds.run();
+            return films;
+        }
+    }
+}
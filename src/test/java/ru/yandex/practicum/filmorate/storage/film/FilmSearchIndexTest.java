@@ -0,0 +1,105 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.dictionary.Genre;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex.Field.DESCRIPTION;
+import static ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex.Field.GENRE;
+import static ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex.Field.TITLE;
+
+class FilmSearchIndexTest {
+    private final FilmSearchIndex searchIndex = new FilmSearchIndex();
+
+    @Test
+    @DisplayName("Check that substring is found case-insensitive")
+    void shouldFindSubstring() {
+        searchIndex.put(film(1L, "Матрица", "Фантастика", 0));
+        searchIndex.put(film(2L, "Terminator", "Robot from future", 0));
+
+        assertThat(searchIndex.search("МАТР", Set.of(TITLE), 10)).isEqualTo(List.of(1L));
+        assertThat(searchIndex.search("min", Set.of(TITLE), 10)).isEqualTo(List.of(2L));
+        assertThat(searchIndex.search("er", Set.of(TITLE), 10)).isEqualTo(List.of(2L));
+        assertThat(searchIndex.search("future", Set.of(TITLE), 10)).isEmpty();
+        assertThat(searchIndex.search("future", EnumSet.of(TITLE, DESCRIPTION), 10)).isEqualTo(List.of(2L));
+    }
+
+    @Test
+    @DisplayName("Check that films are ranked by relevance, then by rate")
+    void shouldRankByRelevanceAndRate() {
+        searchIndex.put(film(1L, "The Matrix", null, 10));
+        searchIndex.put(film(2L, "Matrix", null, 0));
+        searchIndex.put(film(3L, "Matrix Reloaded", null, 5));
+        searchIndex.put(film(4L, "Animatrix", null, 1));
+        searchIndex.put(film(5L, "Last Matrix", null, 20));
+
+        assertThat(searchIndex.search("matrix", Set.of(TITLE), 10)).isEqualTo(List.of(2L, 3L, 5L, 1L, 4L));
+        assertThat(searchIndex.search("matrix", Set.of(TITLE), 2)).isEqualTo(List.of(2L, 3L));
+
+        searchIndex.adjustRate(1L, 15);
+
+        assertThat(searchIndex.search("matrix", Set.of(TITLE), 10)).isEqualTo(List.of(2L, 3L, 1L, 5L, 4L));
+    }
+
+    @Test
+    @DisplayName("Check that hits keep every film tied at the limit, so rates may change the best ones")
+    void shouldKeepTiedHitsForRank() {
+        searchIndex.put(film(1L, "Matrix", null, 0));
+        searchIndex.put(film(2L, "The Matrix", null, 3));
+        searchIndex.put(film(3L, "Last Matrix", null, 2));
+        searchIndex.put(film(4L, "Animatrix", null, 10));
+
+        List<FilmSearchIndex.Hit> hits = searchIndex.searchHits("matrix", Set.of(TITLE), 2);
+
+        assertThat(hits).extracting(FilmSearchIndex.Hit::getFilmId).containsExactlyInAnyOrder(1L, 2L, 3L);
+        assertThat(searchIndex.rank(hits, 2)).isEqualTo(List.of(1L, 2L));
+
+        searchIndex.adjustRate(3L, 5);
+
+        assertThat(searchIndex.rank(hits, 2)).isEqualTo(List.of(1L, 3L));
+    }
+
+    @Test
+    @DisplayName("Check that updated and removed films are reindexed")
+    void shouldReindexFilm() {
+        searchIndex.put(film(1L, "Old name", null, 0));
+        searchIndex.put(film(1L, "New name", null, 0));
+        searchIndex.put(film(2L, "Another name", null, 0));
+        searchIndex.remove(2L);
+
+        assertThat(searchIndex.search("old", Set.of(TITLE), 10)).isEmpty();
+        assertThat(searchIndex.search("name", Set.of(TITLE), 10)).isEqualTo(List.of(1L));
+        assertThat(searchIndex.size()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Check that matches in several fields are summed with field weights")
+    void shouldScoreFieldsWithWeights() {
+        Film drama = film(1L, "Drama", "Drama about drama", 0);
+        Film comedy = film(2L, "Comedy", "Not a drama", 100);
+        comedy.addGenre(new Genre().setId(1).setName("Drama"));
+        searchIndex.put(drama);
+        searchIndex.put(comedy);
+
+        Set<FilmSearchIndex.Field> allFields = EnumSet.allOf(FilmSearchIndex.Field.class);
+
+        assertThat(searchIndex.search("drama", allFields, 10)).isEqualTo(List.of(1L, 2L));
+        assertThat(searchIndex.search("drama", EnumSet.of(GENRE, DESCRIPTION), 10)).isEqualTo(List.of(2L, 1L));
+        assertThat(searchIndex.search("drama", EnumSet.of(GENRE), 10)).isEqualTo(List.of(2L));
+        assertThat(searchIndex.search("drama", allFields, 1)).isEqualTo(List.of(1L));
+    }
+
+    private Film film(Long id, String name, String description, Integer rate) {
+        return new Film()
+                .setId(id)
+                .setName(name)
+                .setDescription(description)
+                .setRate(rate);
+    }
+}
@@ -0,0 +1,88 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.yandex.practicum.filmorate.utils.CreateTestFilm.createNewFilm1;
+import static ru.yandex.practicum.filmorate.utils.CreateTestFilm.createUpdatedFilm1;
+import static ru.yandex.practicum.filmorate.utils.RunConcurrently.runConcurrently;
+
+class InMemoryFilmStorageTest {
+    private static final int THREADS = 8;
+    private static final int OPERATIONS = 1000;
+
+    private final InMemoryFilmStorage filmStorage = new InMemoryFilmStorage();
+
+    @Test
+    @DisplayName("Check that films created concurrently get unique ids")
+    void shouldCreateFilmsConcurrently() throws Exception {
+        runConcurrently(THREADS, OPERATIONS, i -> filmStorage.create(createNewFilm1()));
+
+        Set<Long> ids = filmStorage.findAll().stream()
+                .map(Film::getId)
+                .collect(Collectors.toSet());
+
+        assertThat(ids.size()).isEqualTo(THREADS * OPERATIONS);
+        assertThat(Collections.max(ids)).isEqualTo(THREADS * OPERATIONS);
+    }
+
+    @Test
+    @DisplayName("Check that concurrent likes and unlikes are not lost")
+    void shouldNotLoseConcurrentLikes() throws Exception {
+        Film film = filmStorage.create(createNewFilm1().setRate(0));
+
+        runConcurrently(THREADS, OPERATIONS, i -> filmStorage.addLike(film, (long) i));
+        // Every odd like is taken back
+        runConcurrently(THREADS, OPERATIONS, i -> {
+            if (i % 2 == 1) {
+                filmStorage.deleteLike(film, (long) i);
+            }
+        });
+
+        Film filmFromStorage = filmStorage.getById(film.getId());
+
+        assertThat(filmFromStorage.getLikeFromUserId().size()).isEqualTo(THREADS * OPERATIONS / 2);
+        assertThat(filmFromStorage).hasFieldOrPropertyWithValue("rate", THREADS * OPERATIONS / 2);
+        assertThat(filmStorage.showMostPopularFilms(1).get(0)).isSameAs(film);
+    }
+
+    @Test
+    @DisplayName("Check that update keeps likes and rate of the film")
+    void shouldKeepLikesOnUpdate() {
+        Film film = filmStorage.create(createNewFilm1().setRate(0));
+        filmStorage.create(createNewFilm1().setRate(0));
+        filmStorage.addLike(film, 1L);
+        filmStorage.addLike(film, 2L);
+
+        filmStorage.update(createUpdatedFilm1().setId(film.getId()));
+        Film filmFromStorage = filmStorage.getById(film.getId());
+
+        assertThat(filmFromStorage.getLikeFromUserId()).containsExactly(1L, 2L);
+        assertThat(filmFromStorage).hasFieldOrPropertyWithValue("rate", 2);
+        assertThat(filmStorage.showMostPopularFilms(1).get(0)).isSameAs(filmFromStorage);
+    }
+
+    @Test
+    @DisplayName("Check that rate listener gets only likes that changed the film")
+    void shouldNotifyRateListenerOfStoredLikes() {
+        Film film = filmStorage.create(createNewFilm1().setRate(0));
+        List<Map<Long, Integer>> rateDeltas = new ArrayList<>();
+        filmStorage.addRateListener(rateDeltas::add);
+
+        filmStorage.addLike(film, 1L);
+        filmStorage.addLike(film, 1L);
+        filmStorage.deleteLike(film, 2L);
+        filmStorage.deleteLike(film, 1L);
+
+        assertThat(rateDeltas).containsExactly(Map.of(film.getId(), 1), Map.of(film.getId(), -1));
+    }
+}
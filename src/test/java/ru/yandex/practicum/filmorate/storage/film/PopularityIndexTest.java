@@ -0,0 +1,52 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PopularityIndexTest {
+    private final PopularityIndex popularityIndex = new PopularityIndex();
+
+    @Test
+    @DisplayName("Check that films are ranked by rate and then by id")
+    void shouldRankByRateAndId() {
+        popularityIndex.put(1L, 5);
+        popularityIndex.put(2L, 7);
+        popularityIndex.put(3L, 5);
+        popularityIndex.put(4L, null);
+
+        assertThat(popularityIndex.top(10)).isEqualTo(List.of(2L, 3L, 1L, 4L));
+        assertThat(popularityIndex.top(2)).isEqualTo(List.of(2L, 3L));
+        assertThat(popularityIndex.top(0)).isEmpty();
+        assertThat(popularityIndex.top(-1)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Check that rate adjustment changes ranking")
+    void shouldAdjustRate() {
+        popularityIndex.put(1L, 1);
+        popularityIndex.put(2L, 2);
+        popularityIndex.put(3L, null);
+
+        popularityIndex.adjust(1L, 2);
+        popularityIndex.adjust(3L, 1);
+
+        assertThat(popularityIndex.top(3)).isEqualTo(List.of(1L, 2L, 3L));
+    }
+
+    @Test
+    @DisplayName("Check that removed and unknown films are not ranked")
+    void shouldRemoveFilm() {
+        popularityIndex.put(1L, 1);
+        popularityIndex.put(2L, 2);
+
+        popularityIndex.remove(2L);
+        popularityIndex.adjust(5L, 10);
+
+        assertThat(popularityIndex.top(10)).isEqualTo(List.of(1L));
+        assertThat(popularityIndex.size()).isEqualTo(1);
+    }
+}
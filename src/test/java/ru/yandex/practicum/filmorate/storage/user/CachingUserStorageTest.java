@@ -0,0 +1,48 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.yandex.practicum.filmorate.utils.CreateTestUser.createNewUser1;
+import static ru.yandex.practicum.filmorate.utils.CreateTestUser.createNewUser2;
+
+class CachingUserStorageTest {
+    private final CountingUserStorage countingStorage = new CountingUserStorage();
+    private final CachingUserStorage userStorage = new CachingUserStorage(countingStorage,
+            Caffeine.newBuilder().maximumSize(100).build());
+
+    @Test
+    @DisplayName("Check that both users are reloaded after friendship change")
+    void shouldReloadUsersAfterFriendshipChange() {
+        User user = userStorage.create(createNewUser1());
+        User friend = userStorage.create(createNewUser2());
+
+        userStorage.getById(user.getId());
+        userStorage.getById(friend.getId());
+        userStorage.getById(user.getId());
+        assertThat(countingStorage.loadedIds).isEqualTo(List.of(user.getId(), friend.getId()));
+
+        userStorage.addFriend(user, friend);
+        userStorage.getById(user.getId());
+        userStorage.getById(friend.getId());
+
+        assertThat(countingStorage.loadedIds)
+                .isEqualTo(List.of(user.getId(), friend.getId(), user.getId(), friend.getId()));
+    }
+
+    private static class CountingUserStorage extends InMemoryUserStorage {
+        private final List<Long> loadedIds = new ArrayList<>();
+
+        @Override
+        public User getById(Long userId) {
+            loadedIds.add(userId);
+            return super.getById(userId);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FriendIndexTest {
+    private final FriendIndex friendIndex = new FriendIndex();
+
+    @Test
+    @DisplayName("Check that friends are kept sorted and unique")
+    void shouldKeepFriendsSorted() {
+        friendIndex.add(1L, 5);
+        friendIndex.add(1L, 2);
+        friendIndex.add(1L, 9);
+        friendIndex.add(1L, 2);
+
+        assertThat(friendIndex.friendsOf(1L)).containsExactly(2, 5, 9);
+        assertThat(friendIndex.friendsOf(2L)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Check that removed friend is not returned")
+    void shouldRemoveFriend() {
+        friendIndex.add(1L, 2);
+        friendIndex.add(1L, 3);
+
+        friendIndex.remove(1L, 2);
+        friendIndex.remove(1L, 4);
+
+        assertThat(friendIndex.friendsOf(1L)).containsExactly(3);
+
+        friendIndex.remove(1L, 3);
+
+        assertThat(friendIndex.friendsOf(1L)).isEmpty();
+        assertThat(friendIndex.size()).isEqualTo(0);
+    }
+
+    @Test
+    @DisplayName("Check common friends of users with different amount of friends")
+    void shouldFindCommonFriends() {
+        friendIndex.putAll(1L, new long[]{3, 500, 999});
+        friendIndex.putAll(2L, LongStream.rangeClosed(1, 1000).filter(id -> id % 2 == 1).toArray());
+
+        assertThat(friendIndex.commonFriends(1L, 2L)).containsExactly(3, 999);
+        assertThat(friendIndex.commonFriends(2L, 1L)).containsExactly(3, 999);
+        assertThat(friendIndex.commonFriends(1L, 3L)).isEmpty();
+    }
+}
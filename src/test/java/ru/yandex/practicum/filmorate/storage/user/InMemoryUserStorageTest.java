@@ -0,0 +1,83 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.yandex.practicum.filmorate.utils.CreateTestUser.createNewUser1;
+import static ru.yandex.practicum.filmorate.utils.RunConcurrently.runConcurrently;
+
+class InMemoryUserStorageTest {
+    private static final int THREADS = 8;
+    private static final int OPERATIONS = 1000;
+    private static final int USERS = 100;
+
+    private final InMemoryUserStorage userStorage = new InMemoryUserStorage();
+
+    @Test
+    @DisplayName("Check that users created concurrently get unique ids")
+    void shouldCreateUsersConcurrently() throws Exception {
+        runConcurrently(THREADS, OPERATIONS, i -> userStorage.create(createNewUser1()));
+
+        assertThat(userStorage.findAll().size()).isEqualTo(THREADS * OPERATIONS);
+        assertThat(userStorage.getById((long) THREADS * OPERATIONS)).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Check that concurrently added friends are not lost")
+    void shouldNotLoseConcurrentFriends() throws Exception {
+        for (int i = 0; i < USERS; i++) {
+            userStorage.create(createNewUser1());
+        }
+
+        Map<Long, Set<Long>> expected = new HashMap<>();
+        for (int i = 0; i < THREADS * OPERATIONS; i++) {
+            long userId = userId(i);
+            long friendId = friendId(i);
+            if (userId != friendId) {
+                expected.computeIfAbsent(userId, id -> new HashSet<>()).add(friendId);
+                expected.computeIfAbsent(friendId, id -> new HashSet<>()).add(userId);
+            }
+        }
+
+        runConcurrently(THREADS, OPERATIONS, i -> {
+            if (userId(i) != friendId(i)) {
+                userStorage.addFriend(userStorage.getById(userId(i)), userStorage.getById(friendId(i)));
+            }
+        });
+
+        for (long id = 1; id <= USERS; id++) {
+            assertThat(userStorage.getById(id).getFriends())
+                    .isEqualTo(expected.getOrDefault(id, Set.of()));
+        }
+    }
+
+    @Test
+    @DisplayName("Check that friends are left out unless requested")
+    void shouldLeaveOutFriendsUnlessRequested() {
+        User user = userStorage.create(createNewUser1());
+        User friend = userStorage.create(createNewUser1());
+        userStorage.addFriend(user, friend);
+        userStorage.addFriend(friend, user);
+
+        assertThat(userStorage.findAll(false)).allSatisfy(found -> assertThat(found.getFriends()).isEmpty());
+        assertThat(userStorage.findAll(null, 10, true).get(0).getFriends()).containsExactly(user.getId());
+        assertThat(userStorage.showFriends(user, false).get(0).getFriends()).isEmpty();
+        assertThat(userStorage.showFriends(user, true).get(0).getFriends()).containsExactly(user.getId());
+        assertThat(userStorage.getById(user.getId()).getFriends()).containsExactly(friend.getId());
+    }
+
+    private long userId(int i) {
+        return i % USERS + 1;
+    }
+
+    private long friendId(int i) {
+        return (i / USERS) % USERS + 1;
+    }
+}
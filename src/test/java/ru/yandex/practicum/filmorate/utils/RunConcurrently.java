@@ -0,0 +1,38 @@
+package ru.yandex.practicum.filmorate.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+public class RunConcurrently {
+    // Operation gets numbers from 0 to threads * operations - 1, split between threads
+    public static void runConcurrently(int threads, int operations, IntOperation operation) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                int first = thread * operations;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = first; i < first + operations; i++) {
+                        operation.apply(i);
+                    }
+                    return null;
+                }));
+            }
+
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public interface IntOperation {
+        void apply(int i);
+    }
+}